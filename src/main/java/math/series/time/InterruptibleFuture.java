@@ -0,0 +1,79 @@
+package math.series.time;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * {@link CompletableFuture} whose {@code cancel(true)} interrupts the thread running its task,
+ * so long-running fits that check for interrupts actually stop.
+ *
+ * @param <T> result type
+ */
+public final class InterruptibleFuture<T> extends CompletableFuture<T> {
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = Thread.ofVirtual().name("forecast-", 0).factory();
+
+    /**
+     * Runs every task on a new virtual thread, named forecast-0, forecast-1, ...
+     */
+    public static final Executor VIRTUAL_THREADS = task -> VIRTUAL_THREAD_FACTORY.newThread(task).start();
+
+    private Thread runner;
+    private boolean interrupted;  // whether cancel interrupted the runner
+
+    private InterruptibleFuture() {
+    }
+
+    /**
+     * Runs a task asynchronously. Unlike {@link CompletableFuture#supplyAsync(Supplier, Executor)}, cancelling the
+     * returned future with {@code cancel(true)} interrupts the thread running the task.
+     *
+     * @param task     the task
+     * @param executor executor to run the task on
+     * @param <T>      result type
+     * @return future completed with the result of the task, or cancelled
+     */
+    public static <T> CompletableFuture<T> supplyInterruptibly(final Supplier<T> task, final Executor executor) {
+        final InterruptibleFuture<T> future = new InterruptibleFuture<>();
+        executor.execute(() -> future.run(task));
+        return future;
+    }
+
+    private void run(final Supplier<T> task) {
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+            runner = Thread.currentThread();
+        }
+        try {
+            complete(task.get());
+        } catch (final Throwable ex) {
+            completeExceptionally(ex);
+        } finally {
+            synchronized (this) {
+                runner = null;
+                // the interrupt of our own cancel must not leak into the next task of a pooled thread;
+                // interrupts from anyone else are left for the owner of the thread
+                if (interrupted) {
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled && mayInterruptIfRunning) {
+            synchronized (this) {
+                if (runner != null) {
+                    interrupted = true;
+                    runner.interrupt();
+                }
+            }
+        }
+        return cancelled;
+    }
+}
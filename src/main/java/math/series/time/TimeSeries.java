@@ -5,6 +5,9 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * An abstract base class for time series analysis
  */
@@ -15,7 +18,8 @@ public abstract class TimeSeries<T extends ForecastResult> {
     protected double[] data;
 
     /**
-     * Getting historical training data
+     * Getting historical training data. Subclasses may also estimate their model here once,
+     * so that {@link #forecast(int)} stays cheap.
      */
     public void fit(double[] data) {
         this.data = data.clone();
@@ -27,4 +31,22 @@ public abstract class TimeSeries<T extends ForecastResult> {
      * @return Forecast result
      */
     public abstract T forecast(int forecastSize);
-}
\ No newline at end of file
+
+    /**
+     * Forecasting future values on a virtual thread
+     *
+     * @return Future of the forecast result; cancelling it with interruption stops the computation
+     */
+    public CompletableFuture<T> forecastAsync(int forecastSize) {
+        return forecastAsync(forecastSize, InterruptibleFuture.VIRTUAL_THREADS);
+    }
+
+    /**
+     * Forecasting future values on the given executor
+     *
+     * @return Future of the forecast result; cancelling it with interruption stops the computation
+     */
+    public CompletableFuture<T> forecastAsync(int forecastSize, Executor executor) {
+        return InterruptibleFuture.supplyInterruptibly(() -> forecast(forecastSize), executor);
+    }
+}
@@ -1,14 +1,20 @@
 package math.series.time.arima.analytics;
 
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.extern.java.Log;
 import lombok.val;
+import math.series.time.InterruptibleFuture;
 import math.series.time.TimeSeries;
 import math.series.time.arima.core.ArimaException;
 import math.series.time.arima.models.ArimaForecast;
 import math.series.time.arima.models.ArimaModel;
 import math.series.time.arima.models.ArimaParameterModel;
-import org.apache.commons.math3.util.FastMath;
+import math.series.time.arima.models.FittedArimaModel;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Log
 @NoArgsConstructor
@@ -16,84 +22,194 @@ public final class Arima extends TimeSeries<ArimaForecast> {
     private static final int MAX_D = 3; // Максимальный порядок дифференцирования
     private static final int SEASONAL_PERIOD = 12; // Сезонный период (напр. 12 для месячных данных)
 
+    /**
+     * Model selected by the last {@link #fit(double[])}, or {@code null} before the first one
+     */
+    @Getter
+    private ArimaModel model;
+    private FittedArimaModel snapshot;  // of the model, keeps its psi-weights across forecasts
+
     public Arima(double[] data) {
         super(data);
     }
 
     public static ArimaForecast forecast(final double[] data, final int forecastSize) {
+        return forecast(data, forecastSize, SearchOptions.defaults());
+    }
+
+    /**
+     * Automatic ARIMA forecast with candidate models fitted concurrently.
+     * The selected model is the same as with the sequential search: ties in AIC are resolved by search order.
+     *
+     * @param data         historical data
+     * @param forecastSize size of forecast
+     * @param executor     executor to fit candidates on (e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}),
+     *                     or {@code null} to fit them on the calling thread
+     * @return forecast of the model with the lowest AIC
+     */
+    public static ArimaForecast forecast(final double[] data, final int forecastSize, final Executor executor) {
+        return forecast(data, forecastSize, SearchOptions.builder().executor(executor).build());
+    }
+
+    /**
+     * Automatic ARIMA forecast with the given search options.
+     *
+     * @param data         historical data
+     * @param forecastSize size of forecast
+     * @param options      order search options
+     * @return forecast of the model with the lowest AIC
+     */
+    public static ArimaForecast forecast(final double[] data, final int forecastSize, final SearchOptions options) {
         if (data == null || data.length == 0) {
             throw new IllegalArgumentException("Input data cannot be null or empty");
         }
         try {
-            ArimaForecast bestModel = null;
-            var bestAIC = Double.MAX_VALUE;
-
             // Automatic determination of the differentiation order d
             val optimalD = determineOptimalD(data);
-            val stationaryData = makeStationary(data, optimalD);
-
-            for (int p = 0; p <= 3; ++p) {
-                for (int q = 0; q <= 3; ++q) {
-                    for (int P = 0; P <= 2; ++P) {
-                        for (int D = 0; D <= 2; ++D) {
-                            for (int Q = 0; Q <= 2; ++Q) {
-                                val params = new ArimaParameterModel(
-                                        p, optimalD, q,
-                                        P, D, Q,
-                                        SEASONAL_PERIOD
-                                );
-                                try {
-                                    val model = ArimaSolver.estimateARIMA(
-                                            params, stationaryData,
-                                            stationaryData.length,
-                                            stationaryData.length + forecastSize
-                                    );
-                                    val aic = calculateModelAIC(model, stationaryData);
-                                    if (aic < bestAIC) {
-                                        bestAIC = aic;
-                                        bestModel = model.forecast(forecastSize);
-                                        bestModel.setAic(aic);
-                                    }
-                                } catch (Exception e) {
-                                    // Skipping invalid parameter combinations
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            if (bestModel == null) {
-                log.warning("Using fallback model ARIMA(0,1,0)");
-                val params = new ArimaParameterModel(0, 1, 0, 0, 0, 0, SEASONAL_PERIOD);
-                val model = ArimaSolver.estimateARIMA(params, data, data.length, data.length + forecastSize);
-                bestModel = model.forecast(forecastSize);
-            }
+            val search = new OrderSearch(data, forecastSize, options);
+            val bestModel = selectModel(search, optimalD, data, forecastSize).forecast(forecastSize);
+            bestModel.setPrunedCandidates(search.getPrunedCandidates());
+            bestModel.setEvaluatedCandidates(search.getEvaluatedCandidates());
+            bestModel.setTimeLimited(search.isTimeLimited());
             return bestModel;
+        } catch (final CancellationException ex) {
+            throw ex;
         } catch (final Exception ex) {
             throw new ArimaException("Failed to build ARIMA forecast: " + ex.getMessage(), ex);
         }
     }
 
+    /**
+     * Automatic ARIMA fit, see {@link #fit(double[], int, SearchOptions)}.
+     *
+     * @param data         historical data
+     * @param forecastSize size of the holdout the candidates are scored on
+     * @return the model with the lowest AIC
+     */
+    public static ArimaModel fit(final double[] data, final int forecastSize) {
+        return fit(data, forecastSize, SearchOptions.defaults());
+    }
+
+    /**
+     * Automatic ARIMA fit: runs the same order search as {@link #forecast(double[], int, SearchOptions)},
+     * but returns the winning model itself, with its order, coefficients, AIC and residual variance.
+     * The model is fitted on {@code data} itself, so its forecasts continue the input series on its own scale,
+     * for any horizon in O(horizon), without searching again.
+     *
+     * @param data         historical data
+     * @param forecastSize size of the holdout the candidates are scored on
+     * @param options      order search options
+     * @return the model with the lowest AIC
+     */
+    public static ArimaModel fit(final double[] data, final int forecastSize, final SearchOptions options) {
+        if (data == null || data.length == 0) {
+            throw new IllegalArgumentException("Input data cannot be null or empty");
+        }
+        try {
+            val optimalD = determineOptimalD(data);
+            return selectModel(new OrderSearch(data, forecastSize, options), optimalD, data, forecastSize);
+        } catch (final CancellationException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            throw new ArimaException("Failed to fit ARIMA model: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Runs the order search on the original data with the chosen d, so the selected model, the fallback and
+     * any later {@link #refit} all work on the scale of the input series.
+     */
+    private static ArimaModel selectModel(final OrderSearch search, final int optimalD,
+                                          final double[] data, final int forecastSize) {
+        val best = search.run(optimalD, SEASONAL_PERIOD);
+        if (best != null) {
+            return best.model();
+        }
+        log.warning("Using fallback model ARIMA(0,1,0)");
+        val params = new ArimaParameterModel(0, 1, 0, 0, 0, 0, SEASONAL_PERIOD);
+        return ArimaSolver.estimateARIMA(params, data, data.length, data.length + forecastSize);
+    }
+
+    /**
+     * Automatic ARIMA forecast on a virtual thread.
+     *
+     * @param data         historical data
+     * @param forecastSize size of forecast
+     * @return future of the forecast; cancelling it with interruption stops the order search and the estimator
+     */
+    public static CompletableFuture<ArimaForecast> forecastAsync(final double[] data, final int forecastSize) {
+        return forecastAsync(data, forecastSize, SearchOptions.defaults(), InterruptibleFuture.VIRTUAL_THREADS);
+    }
+
+    /**
+     * Automatic ARIMA forecast on the given executor.
+     *
+     * @param data         historical data
+     * @param forecastSize size of forecast
+     * @param options      order search options
+     * @param executor     executor to run the forecast on
+     * @return future of the forecast; cancelling it with interruption stops the order search and the estimator
+     */
+    public static CompletableFuture<ArimaForecast> forecastAsync(final double[] data, final int forecastSize,
+                                                                 final SearchOptions options,
+                                                                 final Executor executor) {
+        return InterruptibleFuture.supplyInterruptibly(() -> forecast(data, forecastSize, options), executor);
+    }
+
+    /**
+     * Re-estimates a previously fitted model on new data, see {@link #refit(ArimaModel, double[], int, SearchOptions)}.
+     *
+     * @param previous     previously fitted model
+     * @param data         historical data, typically the previous data with new observations appended
+     * @param forecastSize size of forecast
+     * @return the refitted model with the lowest AIC
+     */
+    public static ArimaModel refit(final ArimaModel previous, final double[] data, final int forecastSize) {
+        return refit(previous, data, forecastSize, SearchOptions.defaults());
+    }
+
+    /**
+     * Re-estimates a previously fitted model on new data. Instead of a cold order search, only the previous order
+     * and its p, q, P and Q neighbours are fitted, with the differencing orders kept, and every estimation starts
+     * from the innovations of the previous coefficients on the new data.
+     *
+     * @param previous     previously fitted model
+     * @param data         historical data, typically the previous data with new observations appended
+     * @param forecastSize size of forecast
+     * @param options      search options; the strategy is not used
+     * @return the refitted model with the lowest AIC
+     */
+    public static ArimaModel refit(final ArimaModel previous, final double[] data, final int forecastSize,
+                                   final SearchOptions options) {
+        if (previous == null) {
+            throw new IllegalArgumentException("Previous model cannot be null");
+        }
+        if (data == null || data.length == 0) {
+            throw new IllegalArgumentException("Input data cannot be null or empty");
+        }
+        try {
+            val best = new OrderSearch(data, forecastSize, options).refine(previous.getParams());
+            if (best == null) {
+                throw new ArimaException("no candidate around " + previous.getParams().getOrder() + " could be fitted");
+            }
+            return best.model();
+        } catch (final CancellationException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            throw new ArimaException("Failed to refit ARIMA model: " + ex.getMessage(), ex);
+        }
+    }
+
     private static int determineOptimalD(double[] data) {
         var d = 0;
-        var currentData = data.clone();
-        while (d < MAX_D && !isStationary(currentData)) {
-            currentData = differentiate(currentData);
+        while (d < MAX_D && !isStationary(makeStationary(data, d))) {
             ++d;
         }
         return d;
     }
 
     private static boolean isStationary(double[] data) throws IllegalArgumentException {
-        val mean = Integrator.computeMean(data);
-        var variance = 0.0;
-        for (double value : data) {
-            val delta = value - mean;
-            variance += delta * delta;
-        }
-        variance /= (data.length - 1);
-
-        return variance < 1.0;
+        return Integrator.computeVariance(data) < 1.0;
     }
 
     private static double[] differentiate(double[] data) throws ArimaException {
@@ -114,19 +230,24 @@ public final class Arima extends TimeSeries<ArimaForecast> {
         return result;
     }
 
-    private static double calculateModelAIC(ArimaModel model, double[] data) {
-        val nParams = model.getParams().getNumParamsP() + model.getParams().getNumParamsQ();
-        val forecasts = model.forecast(data.length).getForecast();
-        var sse = 0.0;
-        for (int i = 0; i < data.length; i++) {
-            var error = data[i] - forecasts[i];
-            sse += error * error;
-        }
-        return data.length * FastMath.log(sse / data.length) + 2 * nParams;
+    /**
+     * Runs the automatic order search once, scoring candidates on the last
+     * {@link ForecastUtil#testSetPercentage} of the data, and keeps the selected model for {@link #forecast(int)}.
+     *
+     * @param data historical data
+     */
+    @Override
+    public void fit(double[] data) {
+        super.fit(data);
+        this.model = fit(this.data, Math.max(1, (int) (this.data.length * ForecastUtil.testSetPercentage)));
+        this.snapshot = model.snapshot();
     }
 
+    /**
+     * Forecasts from the model of the last {@link #fit(double[])}; without one, searches the orders on every call.
+     */
     @Override
     public ArimaForecast forecast(int forecastSize) {
-        return forecast(data, forecastSize);
+        return snapshot != null ? snapshot.forecast(forecastSize) : forecast(data, forecastSize);
     }
 }
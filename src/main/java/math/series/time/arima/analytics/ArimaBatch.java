@@ -0,0 +1,91 @@
+package math.series.time.arima.analytics;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.val;
+import math.series.time.arima.models.ArimaForecast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Automatic ARIMA forecasts for many series at once.
+ * Series are split recursively into fork-join tasks ({@link RangeTask}), so idle workers steal the remaining halves
+ * and series of very different cost balance out. When there are fewer series than workers, the candidate
+ * orders of each series are forked on the pool as well and joined, so no worker blocks waiting for them.
+ * A failing series is recorded in the result and does not abort the batch.
+ */
+@Getter
+@Builder
+public final class ArimaBatch {
+    /**
+     * Pool to run the batch on.
+     */
+    @Builder.Default
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    /**
+     * Order search options of every series; their executor is replaced by the batch.
+     */
+    @Builder.Default
+    private final SearchOptions options = SearchOptions.defaults();
+    /**
+     * Progress listener, or {@code null} for none.
+     */
+    private final BatchProgressListener listener;
+
+    /**
+     * Default batch: common pool, default search options, no progress listener.
+     *
+     * @return default batch
+     */
+    public static ArimaBatch defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Forecasts every series of the batch.
+     *
+     * @param series       historical data by series id
+     * @param forecastSize size of forecast
+     * @return forecasts and failures by series id, in the iteration order of {@code series}
+     */
+    public BatchResult forecast(final Map<String, double[]> series, final int forecastSize) {
+        val started = System.nanoTime();
+        val ids = new ArrayList<>(series.keySet());
+        val seriesOptions = ids.size() < pool.getParallelism()
+                ? options.toBuilder().executor(pool).build()
+                : options.toBuilder().executor(null).build();
+        val forecasts = new ConcurrentHashMap<String, ArimaForecast>();
+        val failures = new ConcurrentHashMap<String, RuntimeException>();
+        val completed = new AtomicInteger();
+
+        RangeTask.forEach(pool, 0, ids.size(), index -> {
+            val id = ids.get(index);
+            try {
+                forecasts.put(id, Arima.forecast(series.get(id), forecastSize, seriesOptions));
+            } catch (final RuntimeException ex) {
+                failures.put(id, ex);
+            }
+            if (listener != null) {
+                listener.onSeriesCompleted(id, completed.incrementAndGet(), ids.size());
+            }
+        });
+
+        val orderedForecasts = new LinkedHashMap<String, ArimaForecast>();
+        val orderedFailures = new LinkedHashMap<String, RuntimeException>();
+        for (val id : ids) {
+            if (forecasts.containsKey(id)) {
+                orderedForecasts.put(id, forecasts.get(id));
+            } else {
+                orderedFailures.put(id, failures.get(id));
+            }
+        }
+        return new BatchResult(Collections.unmodifiableMap(orderedForecasts),
+                Collections.unmodifiableMap(orderedFailures), System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,93 @@
+package math.series.time.arima.analytics;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.val;
+import math.series.time.arima.core.ArimaException;
+import math.series.time.arima.models.FittedArimaModel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bootstrap simulation of future sample paths of a fitted model, for prediction intervals of series whose
+ * residuals are far from Gaussian.
+ * <p>
+ * Paths are generated in fixed-size blocks on a fork-join pool. Every block draws from its own
+ * {@link SplittableRandom}, split off the seeded root in block order before any work starts, so the paths
+ * depend on the seed only and not on the number of threads or the order the blocks run in.
+ */
+@Getter
+@Builder
+public final class ArimaSimulation {
+    private static final int BLOCK_SIZE = 256;
+
+    /**
+     * Pool to generate the paths on.
+     */
+    @Builder.Default
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    /**
+     * Number of paths to generate.
+     */
+    @Builder.Default
+    private final int paths = 1000;
+    /**
+     * Seed of the root random generator.
+     */
+    @Builder.Default
+    private final long seed = 42L;
+
+    /**
+     * Default simulation: common pool, 1000 paths, fixed seed.
+     *
+     * @return default simulation
+     */
+    public static ArimaSimulation defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Simulates future sample paths by bootstrapping the in-sample residuals of a fitted model.
+     *
+     * @param model        the fitted model
+     * @param data         the training data the model was fitted on
+     * @param forecastSize size of forecast
+     * @return the simulated paths
+     * @throws ArimaException if there are no paths, the forecast size is not positive, the paths do not fit in one
+     *                        array or the data are too short
+     */
+    public SimulatedPaths simulate(final FittedArimaModel model, final double[] data, final int forecastSize)
+            throws ArimaException {
+        if (paths <= 0) {
+            throw new ArimaException("number of paths must be positive: " + paths);
+        }
+        if (forecastSize <= 0) {
+            throw new ArimaException("forecast size must be positive: " + forecastSize);
+        }
+        final int size;
+        try {
+            size = Math.multiplyExact(paths, forecastSize);
+        } catch (final ArithmeticException ex) {
+            throw new ArimaException("too many values to simulate: " + paths + " paths of " + forecastSize
+                    + " steps", ex);
+        }
+        val residuals = model.residuals(data);
+        val values = new double[size];
+        val blocks = (paths + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        val root = new SplittableRandom(seed);
+        val randoms = new SplittableRandom[blocks];
+        for (var block = 0; block < blocks; ++block) {
+            randoms[block] = root.split();
+        }
+        RangeTask.forEach(pool, 0, blocks, block -> {
+            val random = randoms[block];
+            val start = block * BLOCK_SIZE;
+            val end = start + Math.min(BLOCK_SIZE, paths - start);
+            for (var path = start; path < end; ++path) {
+                model.simulateInto(forecastSize, residuals, random, values, path * forecastSize);
+            }
+        });
+        return new SimulatedPaths(paths, forecastSize, values);
+    }
+}
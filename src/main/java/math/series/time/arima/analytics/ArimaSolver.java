@@ -5,15 +5,17 @@ import math.series.time.arima.core.ArimaException;
 import math.series.time.arima.models.ArimaForecast;
 import math.series.time.arima.models.ArimaModel;
 import math.series.time.arima.models.ArimaParameterModel;
+import math.series.time.arima.models.ArimaState;
 import org.apache.commons.math3.util.FastMath;
 
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
 
 /**
  * Main solver for ARIMA. Contains forecasting and quality evaluation methods.
  */
 public final class ArimaSolver {
-    private static final int maxIterationForHannanRissanen = 5;
-
     /**
      * Performs forecasting for a stationary ARMA model.
      *
@@ -25,81 +27,177 @@ public final class ArimaSolver {
      */
     public static double[] forecastARMA(final ArimaParameterModel params, final double[] dataStationary,
                                         final int startIndex, final int endIndex) {
-        val errors = new double[endIndex];
-        val data = new double[endIndex];
-        System.arraycopy(dataStationary, 0, data, 0, startIndex);
-
-        val forecast_len = endIndex - startIndex;
-        val forecasts = new double[forecast_len];
-        val dp = params.getDegreeP();
-        val dq = params.getDegreeQ();
-        val start_idx = Math.max(dp, dq);
-
-        for (var j = 0; j < start_idx; ++j) {
-            errors[j] = 0;
-        }
-        // populate errors and forecasts
-        for (var j = start_idx; j < startIndex; ++j) {
-            val forecast = params.forecastOnePointARMA(data, errors, j);
-            val error = data[j] - forecast;
-            errors[j] = error;
+        try (var workspace = ArimaWorkspace.acquire()) {
+            val errors = workspace.buffer(ArimaWorkspace.Slot.FORECAST_ERRORS, endIndex);
+            val data = workspace.buffer(ArimaWorkspace.Slot.FORECAST_DATA, endIndex);
+            System.arraycopy(dataStationary, 0, data, 0, startIndex);
+
+            val forecast_len = endIndex - startIndex;
+            val forecasts = new double[forecast_len];
+            val dp = params.getDegreeP();
+            val dq = params.getDegreeQ();
+            val start_idx = Math.max(dp, dq);
+
+            for (var j = 0; j < start_idx; ++j) {
+                errors[j] = 0;
+            }
+            // populate errors and forecasts
+            for (var j = start_idx; j < startIndex; ++j) {
+                val forecast = params.forecastOnePointARMA(data, errors, j);
+                val error = data[j] - forecast;
+                errors[j] = error;
+            }
+            // now we can forecast
+            for (var j = startIndex; j < endIndex; ++j) {
+                val forecast = params.forecastOnePointARMA(data, errors, j);
+                data[j] = forecast;
+                errors[j] = 0;
+                forecasts[j - startIndex] = forecast;
+            }
+            // return forecasted values
+            return forecasts;
         }
-        // now we can forecast
-        for (var j = startIndex; j < endIndex; ++j) {
-            val forecast = params.forecastOnePointARMA(data, errors, j);
-            data[j] = forecast;
-            errors[j] = 0;
-            forecasts[j - startIndex] = forecast;
-        }
-        // return forecasted values
-        return forecasts;
     }
 
     public static ArimaForecast forecastARIMA(final ArimaParameterModel params, final double[] data,
                                               final int forecastStartIndex, final int forecastEndIndex) throws ArimaException {
+        validateAndGetForecastLength(params, data, forecastStartIndex, forecastEndIndex);
+        return forecastARIMA(params, data, forecastStartIndex, forecastEndIndex,
+                prepareDifferentiation(params, data, forecastStartIndex));
+    }
+
+    /**
+     * Forecasts on training data that has already been differentiated, possibly shared with other models.
+     */
+    static ArimaForecast forecastARIMA(final ArimaParameterModel params, final double[] data,
+                                       final int forecastStartIndex, final int forecastEndIndex,
+                                       final DifferencedSeries diffResult) throws ArimaException {
         val forecastLength = validateAndGetForecastLength(params, data, forecastStartIndex, forecastEndIndex);
         val forecast = new double[forecastLength];
-        val diffResult = prepareDifferentiation(params, data, forecastStartIndex);
+        diffResult.seed(params);
 
         //==========================================
 
         //==========================================
         // FORECAST
-        val forecastStationary = forecastARMA(params, diffResult.dataStationary,
-                diffResult.dataStationary.length,
-                diffResult.dataStationary.length + forecastLength);
+        val forecastStationary = forecastARMA(params, diffResult.dataStationary(),
+                diffResult.dataStationary().length,
+                diffResult.dataStationary().length + forecastLength);
 
-        val dataForecastStationary = new double[diffResult.dataStationary.length + forecastLength];
+        val dataForecastStationary = new double[diffResult.dataStationary().length + forecastLength];
 
-        System.arraycopy(diffResult.dataStationary, 0, dataForecastStationary, 0, diffResult.dataStationary.length);
-        System.arraycopy(forecastStationary, 0, dataForecastStationary, diffResult.dataStationary.length,
+        System.arraycopy(diffResult.dataStationary(), 0, dataForecastStationary, 0, diffResult.dataStationary().length);
+        System.arraycopy(forecastStationary, 0, dataForecastStationary, diffResult.dataStationary().length,
                 forecastStationary.length);
         // END OF FORECAST
         //==========================================
 
         //=========== UN-CENTERING =================
-        Integrator.shift(dataForecastStationary, diffResult.meanStationary);
+        Integrator.shift(dataForecastStationary, diffResult.meanStationary());
         //==========================================
 
         //===========================================
         // INTEGRATE
-        val forecast_merged = integrate(params, dataForecastStationary, diffResult.hasSeasonalI, diffResult.hasNonSeasonalI);
+        val forecast_merged = params.integrate(dataForecastStationary);
         // END OF INTEGRATE
         //===========================================
         System.arraycopy(forecast_merged, forecastStartIndex, forecast, 0, forecastLength);
 
-        return new ArimaForecast(forecast, Integrator.computeVariance(diffResult.dataStationary));
+        return new ArimaForecast(forecast, Integrator.computeVariance(diffResult.dataStationary()));
     }
 
     public static ArimaModel estimateARIMA(final ArimaParameterModel params, final double[] data,
                                            final int forecastStartIndex, final int forecastEndIndex) {
+        validateAndGetForecastLength(params, data, forecastStartIndex, forecastEndIndex);
+        return estimateARIMA(params, data, forecastStartIndex, forecastEndIndex,
+                prepareDifferentiation(params, data, forecastStartIndex));
+    }
+
+    /**
+     * Estimates on training data that has already been differentiated, possibly shared with other models.
+     */
+    static ArimaModel estimateARIMA(final ArimaParameterModel params, final double[] data,
+                                    final int forecastStartIndex, final int forecastEndIndex,
+                                    final DifferencedSeries diffResult) {
+        return estimateARIMA(params, data, forecastStartIndex, forecastEndIndex, diffResult, null,
+                SearchOptions.defaults(), 0, () -> false);
+    }
+
+    /**
+     * Estimates on already differentiated training data, warm-started from the given stationary residuals,
+     * with the iteration limits of the given options.
+     * <p>
+     * A stationary residual is the one-step prediction error of the original value {@code d + D·m} points later,
+     * whatever the differencing orders. The information criteria are computed from the prediction errors of
+     * the original values from {@code scoreStart} on, so candidates of one search that all get the same
+     * {@code scoreStart} are compared on the same observations, and their ranking does not depend on the scale
+     * of the data. A candidate whose first full lag window comes later is scored from there instead.
+     *
+     * @param scoreStart index in the original data of the first prediction error the criteria are computed from
+     * @param outOfTime  checked after every Hannan-Rissanen iteration; once true, the best parameters so far are kept
+     */
+    static ArimaModel estimateARIMA(final ArimaParameterModel params, final double[] data,
+                                    final int forecastStartIndex, final int forecastEndIndex,
+                                    final DifferencedSeries diffResult, final double[] initialErrors,
+                                    final SearchOptions options, final int scoreStart,
+                                    final BooleanSupplier outOfTime) {
         val forecast_length = validateAndGetForecastLength(params, data, forecastStartIndex, forecastEndIndex);
-        val diffResult = prepareDifferentiation(params, data, forecastStartIndex);
-        val data_stationary = diffResult.dataStationary;
+        diffResult.seed(params);
+        val data_stationary = diffResult.dataStationary();
         //==========================================
         // FORECAST
-        HannanRissanen.estimateARMA(data_stationary, params, forecast_length, maxIterationForHannanRissanen);
-        return new ArimaModel(params, data, forecastStartIndex);
+        final HannanRissanen.Estimate estimate;
+        try (var workspace = ArimaWorkspace.acquire()) {
+            estimate = HannanRissanen.estimateARMA(data_stationary, params, forecast_length,
+                    options.getMaxIterations(), options.getTolerance(), initialErrors,
+                    scoreStart - params.getDifferencingDegree(), outOfTime, workspace);
+        }
+        val model = new ArimaModel(params, computeState(params, data, forecastStartIndex, diffResult));
+        model.setRmse(estimate.holdoutRmse());
+        model.setIterations(estimate.iterations());
+        setInformationCriteria(model, estimate.residualSumOfSquares(), estimate.residualCount());
+        return model;
+    }
+
+    /**
+     * Computes the compact forecasting state of fitted parameters on the given training data.
+     *
+     * @param params        fitted ARIMA parameters; left untouched
+     * @param data          original data
+     * @param trainDataSize size of train data
+     * @return forecasting state
+     */
+    public static ArimaState computeState(final ArimaParameterModel params, final double[] data,
+                                          final int trainDataSize) {
+        validateAndGetForecastLength(params, data, trainDataSize, trainDataSize + 1);
+        return computeState(params, data, trainDataSize, prepareDifferentiation(
+                new ArimaParameterModel(0, params.d, 0, 0, params.D, 0, params.m), data, trainDataSize));
+    }
+
+    private static ArimaState computeState(final ArimaParameterModel params, final double[] data,
+                                           final int trainDataSize, final DifferencedSeries diffResult) {
+        val seeds = new double[params.getDifferencingDegree()];
+        System.arraycopy(data, trainDataSize - seeds.length, seeds, 0, seeds.length);
+        return ArimaState.of(params, diffResult.dataStationary(), diffResult.meanStationary(), seeds);
+    }
+
+    /**
+     * Sets AIC, AICc, BIC and residual variance of a fitted model from its in-sample residuals.
+     *
+     * @param model the fitted model
+     * @param sse   sum of squared one-step in-sample residuals of the model
+     * @param n     number of those residuals
+     */
+    static void setInformationCriteria(final ArimaModel model, final double sse, final int n) {
+        val params = model.getParams();
+        val k = params.getNumParamsP() + params.getNumParamsQ();
+        val sigma2 = sse / n;
+        val logLikelihoodTerm = n * FastMath.log(sigma2);
+        val aic = logLikelihoodTerm + 2 * k;
+        model.setSigma2(sigma2);
+        model.setAic(aic);
+        model.setAicc(n - k - 1 > 0 ? aic + 2.0 * k * (k + 1) / (n - k - 1) : Double.POSITIVE_INFINITY);
+        model.setBic(logLikelihoodTerm + k * FastMath.log(n));
     }
 
     /**
@@ -122,61 +220,15 @@ public final class ArimaSolver {
     /**
      * Differentiation and centering of data
      **/
-    private static DifferentiationResult prepareDifferentiation(ArimaParameterModel params,
-                                                                double[] data,
-                                                                int forecastStartIndex) {
-        val dataTrain = new double[forecastStartIndex];
-        System.arraycopy(data, 0, dataTrain, 0, forecastStartIndex);
-
-        val hasSeasonalI = params.D > 0 && params.m > 0;
-        val hasNonSeasonalI = params.d > 0;
-        val dataStationary = differentiate(params, dataTrain, hasSeasonalI, hasNonSeasonalI);
+    static DifferencedSeries prepareDifferentiation(ArimaParameterModel params,
+                                                    double[] data,
+                                                    int forecastStartIndex) {
+        val dataStationary = params.differentiate(data, forecastStartIndex);  // currently un-centered
 
         val meanStationary = Integrator.computeMean(dataStationary);
         Integrator.shift(dataStationary, -meanStationary);
 
-        return new DifferentiationResult(dataStationary, meanStationary, hasSeasonalI, hasNonSeasonalI);
-    }
-
-    private static double[] differentiate(ArimaParameterModel params, double[] trainingData,
-                                          boolean hasSeasonalI, boolean hasNonSeasonalI) {
-        double[] dataStationary;  // currently un-centered
-        if (hasSeasonalI && hasNonSeasonalI) {
-            params.differentiateSeasonal(trainingData);
-            params.differentiateNonSeasonal(params.getLastDifferenceSeasonal());
-            dataStationary = params.getLastDifferenceNonSeasonal();
-        } else if (hasSeasonalI) {
-            params.differentiateSeasonal(trainingData);
-            dataStationary = params.getLastDifferenceSeasonal();
-        } else if (hasNonSeasonalI) {
-            params.differentiateNonSeasonal(trainingData);
-            dataStationary = params.getLastDifferenceNonSeasonal();
-        } else {
-            dataStationary = new double[trainingData.length];
-            System.arraycopy(trainingData, 0, dataStationary, 0, trainingData.length);
-        }
-        return dataStationary;
-    }
-
-    private static double[] integrate(ArimaParameterModel params, double[] dataForecastStationary,
-                                      boolean hasSeasonalI, boolean hasNonSeasonalI) {
-        double[] forecast_merged;
-        if (hasSeasonalI && hasNonSeasonalI) {
-            params.integrateSeasonal(dataForecastStationary);
-            params.integrateNonSeasonal(params.getLastIntegrateSeasonal());
-            forecast_merged = params.getLastIntegrateNonSeasonal();
-        } else if (hasSeasonalI) {
-            params.integrateSeasonal(dataForecastStationary);
-            forecast_merged = params.getLastIntegrateSeasonal();
-        } else if (hasNonSeasonalI) {
-            params.integrateNonSeasonal(dataForecastStationary);
-            forecast_merged = params.getLastIntegrateNonSeasonal();
-        } else {
-            forecast_merged = new double[dataForecastStationary.length];
-            System.arraycopy(dataForecastStationary, 0, forecast_merged, 0,
-                    dataForecastStationary.length);
-        }
-        return forecast_merged;
+        return new DifferencedSeries(dataStationary, meanStationary, params);
     }
 
     /**
@@ -192,22 +244,14 @@ public final class ArimaSolver {
     public static double computeRMSE(final double[] left, final double[] right,
                                      final int leftIndexOffset,
                                      final int startIndex, final int endIndex) {
-        var square_sum = 0.0;
-        for (var i = startIndex; i < endIndex; ++i) {
-            val error = left[i + leftIndexOffset] - right[i];
-            square_sum += error * error;
-        }
+        val square_sum = ArrayKernels.INSTANCE.sumSquaredErrors(left, leftIndexOffset, right, startIndex, endIndex);
         return Math.sqrt(square_sum / (endIndex - startIndex));
     }
 
     public static double computeAIC(final double[] left, final double[] right,
                                     final int leftIndexOffset,
                                     final int startIndex, final int endIndex) {
-        var error_sum = 0.0;
-        for (var i = startIndex; i < endIndex; ++i) {
-            val error = left[i + leftIndexOffset] - right[i];
-            error_sum += Math.abs(error);
-        }
+        val error_sum = ArrayKernels.INSTANCE.sumAbsoluteErrors(left, leftIndexOffset, right, startIndex, endIndex);
         if (error_sum == 0.0) {
             return 0;
         } else {
@@ -240,14 +284,21 @@ public final class ArimaSolver {
     public static double setSigma2AndPredicationInterval(final ArimaParameterModel params,
                                                          final ArimaForecast forecastResult,
                                                          final int forecastSize) {
-        val coeffs_AR = params.getCurrentARCoefficients();
-        val coeffs_MA = params.getCurrentMACoefficients();
+        val coeffs_AR = withoutLagZero(params.getCurrentARCoefficients());
+        val coeffs_MA = withoutLagZero(params.getCurrentMACoefficients());
         return forecastResult
                 .setConfInterval(ForecastUtil.confidence_constant_95pct,
                         ForecastUtil.getCumulativeSumOfCoeff(
                                 ForecastUtil.ARMAtoMA(coeffs_AR, coeffs_MA, forecastSize)));
     }
 
+    /**
+     * Drops slot 0 (lag 0) of flattened coefficients, so the result is indexed from lag 1 as ARMAtoMA expects
+     */
+    private static double[] withoutLagZero(final double[] flattened) {
+        return flattened.length == 0 ? flattened : Arrays.copyOfRange(flattened, 1, flattened.length);
+    }
+
     private static boolean checkARIMADataLength(ArimaParameterModel params, double[] data, int startIndex,
                                                 int endIndex) {
         boolean result = true;
@@ -258,12 +309,4 @@ public final class ArimaSolver {
         }
         return result;
     }
-
-    private record DifferentiationResult(
-            double[] dataStationary,
-            double meanStationary,
-            boolean hasSeasonalI,
-            boolean hasNonSeasonalI
-    ) {
-    }
 }
@@ -0,0 +1,149 @@
+package math.series.time.arima.analytics;
+
+import lombok.val;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Scratch memory of the estimate/forecast hot path: the normal equations, the linear solver
+ * and the array buffers of the ARMA recursions. Buffers grow to the largest series seen,
+ * so a warmed-up workspace fits a candidate without allocating anything but the fitted model.
+ * <p>
+ * A workspace is taken with {@link #acquire()} and handed back with {@link #close()}. Platform threads keep one
+ * workspace each; virtual threads are short-lived and numerous, so they borrow from a small shared pool instead.
+ * On release, buffers longer than {@link #MAX_RETAINED_LENGTH} are dropped, so a single very long series does not
+ * pin its memory for the life of the thread or the pool.
+ * <p>
+ * The content of a buffer is undefined when it is handed out and is overwritten by the next call
+ * that uses the same slot of the same workspace; callers must not keep it past their own call.
+ */
+public final class ArimaWorkspace implements AutoCloseable {
+    /**
+     * Longest buffer, in elements, that a released workspace keeps.
+     */
+    public static final int MAX_RETAINED_LENGTH = 1 << 20;
+
+    private static final ThreadLocal<ArimaWorkspace> WORKSPACE =
+            ThreadLocal.withInitial(() -> new ArimaWorkspace(false));
+    // idle workspaces of virtual threads; at most one per carrier thread is worth keeping
+    private static final BlockingQueue<ArimaWorkspace> POOL =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Buffer slots. Code that runs nested inside another use of the workspace takes a different slot.
+     */
+    public enum Slot {
+        /**
+         * Estimator's private copy of the stationary series
+         */
+        SERIES,
+        /**
+         * Residuals of the estimator's recursion
+         */
+        ERRORS,
+        /**
+         * Actual values of the estimator's holdout interval
+         */
+        HOLDOUT,
+        /**
+         * Coefficients of the current estimator iteration
+         */
+        ESTIMATED,
+        /**
+         * Coefficients of the best estimator iteration
+         */
+        BEST,
+        /**
+         * Coefficients of the previous estimator iteration
+         */
+        PREVIOUS,
+        /**
+         * Series extended by the forecasts of a stationary forecast
+         */
+        FORECAST_DATA,
+        /**
+         * Residuals of a stationary forecast
+         */
+        FORECAST_ERRORS,
+        /**
+         * Residuals of the recursion that builds a forecasting state
+         */
+        STATE_ERRORS,
+        /**
+         * Seeds and integrated values of a forecast written into caller-supplied buffers
+         */
+        INTEGRATED
+    }
+
+    private final double[][] buffers = new double[Slot.values().length][];
+    private final NormalEquations equations = new NormalEquations();
+    private final DenseLinearSolver solver = new DenseLinearSolver();
+    private final boolean pooled;
+
+    private ArimaWorkspace(final boolean pooled) {
+        this.pooled = pooled;
+        for (var j = 0; j < buffers.length; ++j) {
+            buffers[j] = new double[0];
+        }
+    }
+
+    /**
+     * Takes a workspace for the current thread: its own one on a platform thread, a pooled one on a virtual thread.
+     * Nested acquisitions on a platform thread return the same workspace, which is why nested code uses other slots.
+     *
+     * @return workspace to {@link #close()} after use
+     */
+    public static ArimaWorkspace acquire() {
+        if (!Thread.currentThread().isVirtual()) {
+            return WORKSPACE.get();
+        }
+        val idle = POOL.poll();
+        return idle != null ? idle : new ArimaWorkspace(true);
+    }
+
+    /**
+     * Releases the workspace: drops buffers longer than {@link #MAX_RETAINED_LENGTH} and returns a pooled workspace
+     * to the pool, or lets it go if the pool is full. The workspace must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        for (var j = 0; j < buffers.length; ++j) {
+            if (buffers[j].length > MAX_RETAINED_LENGTH) {
+                buffers[j] = new double[0];
+            }
+        }
+        if (pooled) {
+            POOL.offer(this);
+        }
+    }
+
+    /**
+     * Buffer of at least the given size; its content is undefined.
+     *
+     * @param slot the buffer slot
+     * @param size the minimal size
+     * @return buffer owned by this workspace
+     */
+    public double[] buffer(final Slot slot, final int size) {
+        val index = slot.ordinal();
+        if (buffers[index].length < size) {
+            buffers[index] = new double[Math.max(size, buffers[index].length + (buffers[index].length >> 1))];
+        }
+        return buffers[index];
+    }
+
+    /**
+     * Normal equations scratch of this workspace
+     */
+    NormalEquations equations() {
+        return equations;
+    }
+
+    /**
+     * Linear solver with scratch buffers of this workspace
+     */
+    DenseLinearSolver solver() {
+        return solver;
+    }
+}
@@ -0,0 +1,79 @@
+package math.series.time.arima.analytics;
+
+import java.util.logging.Logger;
+
+/**
+ * Element-wise and reduction kernels over {@code double[]} used on the long-series hot paths.
+ * <p>
+ * Two implementations exist: {@link ScalarArrayKernels} and {@code VectorArrayKernels}, which uses the
+ * {@code jdk.incubator.vector} API and is built from the separate {@code vector} source set. The vector one is
+ * selected at class initialization when the module is present in the boot layer (run with
+ * {@code --add-modules jdk.incubator.vector}) and the system property {@value #DISABLE_PROPERTY} is not set to
+ * {@code true}; otherwise the scalar one is used.
+ * <p>
+ * Accuracy: element-wise kernels ({@link #difference}, {@link #addScaled}, {@link #shift}) perform the same IEEE
+ * operations per element and are bit-identical between implementations. Reductions are summed in lane-wise partial
+ * sums, so their result may differ from the scalar left-to-right sum by at most {@code n·ε·Σ|term|} (ε = 2⁻⁵³),
+ * which in practice is a few ULPs of the result for well-conditioned sums.
+ */
+interface ArrayKernels {
+    /**
+     * System property that forces the scalar kernels.
+     */
+    String DISABLE_PROPERTY = "math.arima.vector.disable";
+
+    /**
+     * Kernels selected for this JVM.
+     */
+    ArrayKernels INSTANCE = select();
+
+    /**
+     * {@code dst[k] = src[k + lag] - src[k]} for {@code k < src.length - lag}.
+     */
+    void difference(double[] src, double[] dst, int lag);
+
+    /**
+     * {@code dst[k] += factor · src[k + srcOffset]} for {@code k < length}.
+     */
+    void addScaled(double[] src, int srcOffset, double[] dst, int length, double factor);
+
+    /**
+     * {@code data[i] += amount} for all elements.
+     */
+    void shift(double[] data, double amount);
+
+    /**
+     * Sum of all elements.
+     */
+    double sum(double[] data);
+
+    /**
+     * {@code Σ (data[i] - mean)²}.
+     */
+    double sumSquaredDeviations(double[] data, double mean);
+
+    /**
+     * {@code Σ (left[i + leftOffset] - right[i])²} for {@code startIndex <= i < endIndex}.
+     */
+    double sumSquaredErrors(double[] left, int leftOffset, double[] right, int startIndex, int endIndex);
+
+    /**
+     * {@code Σ |left[i + leftOffset] - right[i]|} for {@code startIndex <= i < endIndex}.
+     */
+    double sumAbsoluteErrors(double[] left, int leftOffset, double[] right, int startIndex, int endIndex);
+
+    private static ArrayKernels select() {
+        if (!Boolean.getBoolean(DISABLE_PROPERTY)
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (ArrayKernels) Class.forName(ArrayKernels.class.getPackageName() + ".VectorArrayKernels")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                Logger.getLogger(ArrayKernels.class.getName())
+                        .warning("Vector API kernels unavailable, using scalar kernels: " + e);
+            }
+        }
+        return new ScalarArrayKernels();
+    }
+}
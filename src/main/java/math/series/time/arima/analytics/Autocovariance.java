@@ -0,0 +1,112 @@
+package math.series.time.arima.analytics;
+
+import lombok.val;
+import math.series.time.arima.core.ArimaException;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+/**
+ * Sample autocovariance γ(k) = 1/n · Σ (x[t] - mean)(x[t + k] - mean) of a time series.
+ * Small lag counts are computed directly in O(n·maxLag); long series with many lags go through
+ * the FFT of the zero-padded series in O(n log n).
+ */
+public final class Autocovariance {
+    /**
+     * Relative cost of one FFT butterfly against one multiply-add of the direct sum.
+     */
+    private static final int FFT_COST_FACTOR = 4;
+
+    private Autocovariance() {
+    }
+
+    /**
+     * Computes autocovariances choosing the cheaper method.
+     *
+     * @param data   the time series
+     * @param maxLag the maximum lag
+     * @return autocovariances for lags {@code 0 .. maxLag}
+     */
+    public static double[] compute(final double[] data, final int maxLag) {
+        validate(data, maxLag);
+        val size = paddedSize(data.length);
+        val directCost = (long) data.length * (maxLag + 1);
+        val fftCost = (long) FFT_COST_FACTOR * size * Integer.numberOfTrailingZeros(size);
+        return directCost > fftCost ? fft(data, maxLag) : direct(data, maxLag);
+    }
+
+    /**
+     * Computes autocovariances by the direct sum.
+     *
+     * @param data   the time series
+     * @param maxLag the maximum lag
+     * @return autocovariances for lags {@code 0 .. maxLag}
+     */
+    public static double[] direct(final double[] data, final int maxLag) {
+        validate(data, maxLag);
+        val n = data.length;
+        val mean = Integrator.computeMean(data);
+        val centered = new double[n];
+        for (var t = 0; t < n; t++) {
+            centered[t] = data[t] - mean;
+        }
+        val acov = new double[maxLag + 1];
+        for (var k = 0; k <= maxLag && k < n; k++) {
+            var sum = 0.0;
+            for (var t = 0; t + k < n; t++) {
+                sum += centered[t] * centered[t + k];
+            }
+            acov[k] = sum / n;
+        }
+        return acov;
+    }
+
+    /**
+     * Computes autocovariances through the power spectrum of the series zero-padded to avoid circular overlap.
+     *
+     * @param data   the time series
+     * @param maxLag the maximum lag
+     * @return autocovariances for lags {@code 0 .. maxLag}
+     */
+    public static double[] fft(final double[] data, final int maxLag) {
+        validate(data, maxLag);
+        val n = data.length;
+        val size = paddedSize(n);
+        val mean = Integrator.computeMean(data);
+        val spectrum = new double[2][size];
+        val re = spectrum[0];
+        val im = spectrum[1];
+        for (var t = 0; t < n; t++) {
+            re[t] = data[t] - mean;
+        }
+        FastFourierTransformer.transformInPlace(spectrum, DftNormalization.STANDARD, TransformType.FORWARD);
+        for (var f = 0; f < size; f++) {
+            re[f] = re[f] * re[f] + im[f] * im[f];
+            im[f] = 0.0;
+        }
+        FastFourierTransformer.transformInPlace(spectrum, DftNormalization.STANDARD, TransformType.INVERSE);
+        val acov = new double[maxLag + 1];
+        for (var k = 0; k <= maxLag && k < n; k++) {
+            acov[k] = re[k] / n;
+        }
+        return acov;
+    }
+
+    /**
+     * Smallest power of two that holds the linear (non-circular) autocorrelation of {@code n} points.
+     */
+    private static int paddedSize(final int n) {
+        var size = 1;
+        while (size < 2 * n - 1) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static void validate(final double[] data, final int maxLag) {
+        if (data == null || data.length == 0 || maxLag < 0) {
+            throw new ArimaException("Invalid parameters: length=" + (data != null ? data.length : 0)
+                    + ", maxLag=" + maxLag);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package math.series.time.arima.analytics;
+
+/**
+ * Receives progress of a batch forecast. Called from the worker threads, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface BatchProgressListener {
+    /**
+     * Called after each series has been forecast or has failed.
+     *
+     * @param id        id of the finished series
+     * @param completed number of series finished so far
+     * @param total     number of series in the batch
+     */
+    void onSeriesCompleted(String id, int completed, int total);
+}
@@ -0,0 +1,42 @@
+package math.series.time.arima.analytics;
+
+import lombok.Getter;
+import math.series.time.arima.models.ArimaForecast;
+
+import java.util.Map;
+
+/**
+ * Outcome of a batch forecast: forecasts of the series that succeeded, errors of the ones that failed,
+ * both in input order, and the wall-clock time of the whole batch.
+ */
+@Getter
+public final class BatchResult {
+    private final Map<String, ArimaForecast> forecasts;
+    private final Map<String, RuntimeException> failures;
+    private final long elapsedNanos;
+
+    BatchResult(final Map<String, ArimaForecast> forecasts, final Map<String, RuntimeException> failures,
+                final long elapsedNanos) {
+        this.forecasts = forecasts;
+        this.failures = failures;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Getter for the number of series in the batch
+     *
+     * @return forecast and failed series
+     */
+    public int getSeriesCount() {
+        return forecasts.size() + failures.size();
+    }
+
+    /**
+     * Getter for the batch throughput
+     *
+     * @return series per second, failed ones included
+     */
+    public double getThroughput() {
+        return elapsedNanos > 0 ? getSeriesCount() * 1e9 / elapsedNanos : 0.0;
+    }
+}
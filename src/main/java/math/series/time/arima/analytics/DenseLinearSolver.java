@@ -0,0 +1,206 @@
+package math.series.time.arima.analytics;
+
+import lombok.val;
+import math.series.time.arima.core.ArimaException;
+
+/**
+ * Solver for small dense linear systems stored as flat row-major {@code double[]} arrays.
+ * Tries a Cholesky factorization of the (optionally ridge-regularized) matrix first and falls back to
+ * LU with partial pivoting of the original matrix, like the commons-math
+ * {@code CholeskyDecomposition}/{@code LUDecomposition} pair it replaces, with the same loop order and thresholds.
+ * <p>
+ * The kernels are pure functions of their arguments and every instance has its own scratch buffers,
+ * so results are bit-identical whatever thread calls them, and a warmed-up instance solves without allocating.
+ * An instance is not thread-safe; the estimator uses the one of its {@link ArimaWorkspace}.
+ */
+public final class DenseLinearSolver {
+    /**
+     * Minimal pivot accepted by the Cholesky factorization (commons-math default).
+     */
+    public static final double POSITIVITY_THRESHOLD = 1.0e-10;
+    /**
+     * Minimal pivot accepted by the LU factorization (commons-math default).
+     */
+    public static final double SINGULARITY_THRESHOLD = 1.0e-11;
+
+    private double[] factor = new double[0];
+    private int[] pivot = new int[0];
+
+    /**
+     * Solver with its own scratch buffers, which grow to the largest system solved.
+     */
+    public DenseLinearSolver() {
+    }
+
+    /**
+     * Solves {@code (a + ridge·I)·x = b} by Cholesky factorization; if the regularized matrix is not positive
+     * definite, solves {@code a·x = b} by LU factorization instead.
+     *
+     * @param a     symmetric matrix of size {@code n × n}, row-major; not modified
+     * @param b     right-hand side of size {@code n}; not modified
+     * @param n     dimension of the system
+     * @param ridge value added to the diagonal before the Cholesky attempt
+     * @param x     output array of size at least {@code n}; must not be {@code b}
+     * @throws ArimaException if the matrix is singular
+     */
+    public void solve(final double[] a, final double[] b, final int n, final double ridge, final double[] x) {
+        ensureCapacity(n);
+        System.arraycopy(a, 0, factor, 0, n * n);
+        for (var i = 0; i < n; i++) {
+            factor[i * n + i] += ridge;
+        }
+        System.arraycopy(b, 0, x, 0, n);
+        if (cholesky(factor, n)) {
+            choleskySolve(factor, x, n);
+            return;
+        }
+        System.arraycopy(a, 0, factor, 0, n * n);
+        if (!lu(factor, pivot, n)) {
+            throw new ArimaException("matrix is singular");
+        }
+        luSolve(factor, pivot, b, x, n);
+    }
+
+    /**
+     * In-place Cholesky factorization. On success the upper triangle holds Lᵀ.
+     *
+     * @param l symmetric matrix of size {@code n × n}, row-major; overwritten
+     * @param n dimension
+     * @return {@code false} if the matrix is not positive definite
+     */
+    static boolean cholesky(final double[] l, final int n) {
+        for (var i = 0; i < n; i++) {
+            for (var j = i + 1; j < n; j++) {
+                l[j * n + i] = 0;
+            }
+        }
+        for (var i = 0; i < n; i++) {
+            val rowI = i * n;
+            if (l[rowI + i] <= POSITIVITY_THRESHOLD) {
+                return false;
+            }
+            l[rowI + i] = Math.sqrt(l[rowI + i]);
+            val inverse = 1.0 / l[rowI + i];
+            for (var q = n - 1; q > i; q--) {
+                l[rowI + q] *= inverse;
+                val rowQ = q * n;
+                for (var p = q; p < n; p++) {
+                    l[rowQ + p] -= l[rowI + q] * l[rowI + p];
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves {@code L·Lᵀ·x = b} in place for a factor produced by {@link #cholesky}.
+     */
+    static void choleskySolve(final double[] l, final double[] x, final int n) {
+        for (var j = 0; j < n; j++) {
+            val rowJ = j * n;
+            x[j] /= l[rowJ + j];
+            val xJ = x[j];
+            for (var i = j + 1; i < n; i++) {
+                x[i] -= xJ * l[rowJ + i];
+            }
+        }
+        for (var j = n - 1; j >= 0; j--) {
+            x[j] /= l[j * n + j];
+            val xJ = x[j];
+            for (var i = 0; i < j; i++) {
+                x[i] -= xJ * l[i * n + j];
+            }
+        }
+    }
+
+    /**
+     * In-place LU factorization with partial pivoting (Crout).
+     *
+     * @param lu    matrix of size {@code n × n}, row-major; overwritten with L (unit diagonal) and U
+     * @param pivot output row permutation of size at least {@code n}
+     * @param n     dimension
+     * @return {@code false} if the matrix is singular
+     */
+    static boolean lu(final double[] lu, final int[] pivot, final int n) {
+        for (var row = 0; row < n; row++) {
+            pivot[row] = row;
+        }
+        for (var col = 0; col < n; col++) {
+            // upper
+            for (var row = 0; row < col; row++) {
+                val rowOffset = row * n;
+                var sum = lu[rowOffset + col];
+                for (var i = 0; i < row; i++) {
+                    sum -= lu[rowOffset + i] * lu[i * n + col];
+                }
+                lu[rowOffset + col] = sum;
+            }
+            // lower
+            var max = col;
+            var largest = Double.NEGATIVE_INFINITY;
+            for (var row = col; row < n; row++) {
+                val rowOffset = row * n;
+                var sum = lu[rowOffset + col];
+                for (var i = 0; i < col; i++) {
+                    sum -= lu[rowOffset + i] * lu[i * n + col];
+                }
+                lu[rowOffset + col] = sum;
+                if (Math.abs(sum) > largest) {
+                    largest = Math.abs(sum);
+                    max = row;
+                }
+            }
+            if (Math.abs(lu[max * n + col]) < SINGULARITY_THRESHOLD) {
+                return false;
+            }
+            if (max != col) {
+                val maxOffset = max * n;
+                val colOffset = col * n;
+                for (var i = 0; i < n; i++) {
+                    val tmp = lu[maxOffset + i];
+                    lu[maxOffset + i] = lu[colOffset + i];
+                    lu[colOffset + i] = tmp;
+                }
+                val tmp = pivot[max];
+                pivot[max] = pivot[col];
+                pivot[col] = tmp;
+            }
+            val luDiag = lu[col * n + col];
+            for (var row = col + 1; row < n; row++) {
+                lu[row * n + col] /= luDiag;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves {@code A·x = b} for a factorization produced by {@link #lu}.
+     */
+    static void luSolve(final double[] lu, final int[] pivot, final double[] b, final double[] x, final int n) {
+        for (var row = 0; row < n; row++) {
+            x[row] = b[pivot[row]];
+        }
+        for (var col = 0; col < n; col++) {
+            val xCol = x[col];
+            for (var i = col + 1; i < n; i++) {
+                x[i] -= xCol * lu[i * n + col];
+            }
+        }
+        for (var col = n - 1; col >= 0; col--) {
+            x[col] /= lu[col * n + col];
+            val xCol = x[col];
+            for (var i = 0; i < col; i++) {
+                x[i] -= xCol * lu[i * n + col];
+            }
+        }
+    }
+
+    private void ensureCapacity(final int n) {
+        if (factor.length < n * n) {
+            factor = new double[n * n];
+        }
+        if (pivot.length < n) {
+            pivot = new int[n];
+        }
+    }
+}
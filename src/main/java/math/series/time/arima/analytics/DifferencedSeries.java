@@ -0,0 +1,28 @@
+package math.series.time.arima.analytics;
+
+import math.series.time.arima.models.ArimaParameterModel;
+
+/**
+ * Differentiated and centered training data. Read-only once built, so one instance can be shared
+ * by every model with the same differencing orders.
+ *
+ * @param dataStationary    differentiated and centered training data
+ * @param meanStationary    mean removed from the differentiated data
+ * @param initialConditions model holding the initial conditions recorded during differentiation
+ */
+record DifferencedSeries(
+        double[] dataStationary,
+        double meanStationary,
+        ArimaParameterModel initialConditions
+) {
+    /**
+     * Prepares a model to integrate forecasts made on this series.
+     *
+     * @param params model with the same differencing orders
+     */
+    void seed(final ArimaParameterModel params) {
+        if (params != initialConditions) {
+            params.copyInitialConditions(initialConditions);
+        }
+    }
+}
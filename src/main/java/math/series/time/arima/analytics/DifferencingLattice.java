@@ -0,0 +1,42 @@
+package math.series.time.arima.analytics;
+
+import lombok.val;
+import math.series.time.arima.models.ArimaOrder;
+import math.series.time.arima.models.ArimaParameterModel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Differenced training series shared across the candidates of one order search.
+ * Each distinct (d, D, m) combination is differentiated and centered once, on first request.
+ */
+final class DifferencingLattice {
+    private final double[] data;
+    private final int trainDataSize;
+    private final Map<Key, DifferencedSeries> series = new ConcurrentHashMap<>();
+
+    /**
+     * @param data          original data
+     * @param trainDataSize size of train data
+     */
+    DifferencingLattice(final double[] data, final int trainDataSize) {
+        this.data = data;
+        this.trainDataSize = trainDataSize;
+    }
+
+    /**
+     * Returns the training series differenced with the orders of the given candidate.
+     *
+     * @param order the candidate order
+     * @return shared differenced series; must not be modified
+     */
+    DifferencedSeries get(final ArimaOrder order) {
+        val key = new Key(order.d(), order.D(), order.m());
+        return series.computeIfAbsent(key, k -> ArimaSolver.prepareDifferentiation(
+                new ArimaParameterModel(0, k.d(), 0, 0, k.D(), 0, k.m()), data, trainDataSize));
+    }
+
+    private record Key(int d, int D, int m) {
+    }
+}
@@ -0,0 +1,194 @@
+package math.series.time.arima.analytics;
+
+import lombok.Getter;
+import lombok.val;
+import math.series.time.arima.core.ArimaException;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Combined differencing operator (1 - B)^d (1 - B^m)^D of a seasonal ARIMA model.
+ * The operator is expanded once into its non-zero lags, so differencing and integration work on the series in place
+ * of an intermediate series per differencing order. Differencing adds one {@link ArrayKernels#addScaled} pass per
+ * lag; integration is a recurrence and takes a single scalar pass.
+ */
+public final class DifferencingPolynomial {
+    /**
+     * Highest lag of the operator, d + D·m; also the number of initial conditions
+     */
+    @Getter
+    private final int degree;
+    private final int[] lags;
+    private final double[] coeffs;
+
+    private DifferencingPolynomial(final int degree, final int[] lags, final double[] coeffs) {
+        this.degree = degree;
+        this.lags = lags;
+        this.coeffs = coeffs;
+    }
+
+    /**
+     * Expands (1 - B)^d (1 - B^m)^D. Seasonal differencing is skipped when {@code m} is zero.
+     *
+     * @param d the degree of differencing
+     * @param D the degree of seasonal differencing
+     * @param m the number of periods in each season
+     * @return the expanded operator
+     */
+    public static DifferencingPolynomial of(final int d, final int D, final int m) {
+        Map<Integer, Double> polynomial = new TreeMap<>();
+        polynomial.put(0, 1.0);
+        for (var j = 0; j < d; ++j) {
+            polynomial = multiplyByDifference(polynomial, 1);
+        }
+        if (m > 0) {
+            for (var j = 0; j < D; ++j) {
+                polynomial = multiplyByDifference(polynomial, m);
+            }
+        }
+        polynomial.remove(0);
+        val lags = new int[polynomial.size()];
+        val coeffs = new double[polynomial.size()];
+        var index = 0;
+        var degree = 0;
+        for (val term : polynomial.entrySet()) {
+            lags[index] = term.getKey();
+            coeffs[index] = term.getValue();
+            degree = Math.max(degree, term.getKey());
+            ++index;
+        }
+        return new DifferencingPolynomial(degree, lags, coeffs);
+    }
+
+    private static Map<Integer, Double> multiplyByDifference(final Map<Integer, Double> polynomial, final int lag) {
+        val product = new TreeMap<Integer, Double>();
+        for (val term : polynomial.entrySet()) {
+            product.merge(term.getKey(), term.getValue(), Double::sum);
+            product.merge(term.getKey() + lag, -term.getValue(), Double::sum);
+        }
+        product.values().removeIf(coeff -> coeff == 0.0);
+        return product;
+    }
+
+    /**
+     * Writes an autoregression of the differenced series on the original series: the coefficients {@code a_j} of
+     * {@code (1 - Σ φ_l·B^l)·(this operator) = 1 - Σ a_j·B^j}, e.g. for the psi-weights of an integrated model.
+     *
+     * @param ar AR coefficients of the differenced series indexed by lag, {@code ar[l]} for {@code φ_l};
+     *           {@code ar[0]} is ignored
+     * @return coefficients {@code a_j} indexed from lag one, {@code result[j - 1]} for {@code a_j}
+     */
+    public double[] autoregression(final double[] ar) {
+        val arDegree = Math.max(ar.length - 1, 0);
+        val phi = new double[arDegree + 1];
+        phi[0] = 1.0;
+        for (var l = 1; l <= arDegree; ++l) {
+            phi[l] = -ar[l];
+        }
+        val result = new double[arDegree + degree];
+        for (var j = 1; j <= result.length; ++j) {
+            var product = j <= arDegree ? phi[j] : 0.0;
+            for (var k = 0; k < lags.length; ++k) {
+                val l = j - lags[k];
+                if (l >= 0 && l <= arDegree) {
+                    product += coeffs[k] * phi[l];
+                }
+            }
+            result[j - 1] = -product;
+        }
+        return result;
+    }
+
+    /**
+     * Applies the operator: {@code dst[t - degree] = Σ c_k·src[t - k]} for {@code t >= degree}.
+     *
+     * @param src     the source series
+     * @param dst     output of size {@code src.length - degree}
+     * @param initial output of size {@code degree}, receives the first {@code degree} source values
+     * @throws ArimaException if the sizes do not match
+     */
+    public void differentiate(final double[] src, final double[] dst, final double[] initial) throws ArimaException {
+        differentiate(src, src.length, dst, initial);
+    }
+
+    /**
+     * Applies the operator to the first {@code length} values of the source, without copying them out first.
+     *
+     * @param src     the source series
+     * @param length  number of source values to use
+     * @param dst     output of size {@code length - degree}
+     * @param initial output of size {@code degree}, receives the first {@code degree} source values
+     * @throws ArimaException if the sizes do not match
+     */
+    public void differentiate(final double[] src, final int length, final double[] dst, final double[] initial)
+            throws ArimaException {
+        if (length > src.length || length < degree || (degree > 0 && length == degree)) {
+            throw new ArimaException("Insufficient source size: " + length + ", degree=" + degree);
+        }
+        if (dst.length != length - degree || initial.length != degree) {
+            throw new ArimaException("Invalid destination size: " + dst.length + ", initial=" + initial.length
+                    + ", src=" + length + ", degree=" + degree);
+        }
+        System.arraycopy(src, 0, initial, 0, degree);
+        System.arraycopy(src, degree, dst, 0, dst.length);
+        for (var j = 0; j < lags.length; ++j) {
+            ArrayKernels.INSTANCE.addScaled(src, degree - lags[j], dst, dst.length, coeffs[j]);
+        }
+    }
+
+    /**
+     * Inverts the operator: restores the series from its differences and the initial conditions.
+     *
+     * @param src     the differenced series
+     * @param dst     output of size {@code src.length + degree}
+     * @param initial the first {@code degree} values of the original series
+     * @throws ArimaException if the sizes do not match
+     */
+    public void integrate(final double[] src, final double[] dst, final double[] initial) throws ArimaException {
+        if (dst.length != src.length + degree || initial.length != degree) {
+            throw new ArimaException("Invalid destination size: " + dst.length + ", initial=" + initial.length
+                    + ", src=" + src.length + ", degree=" + degree);
+        }
+        System.arraycopy(initial, 0, dst, 0, degree);
+        for (int t = degree, k = 0; k < src.length; ++t, ++k) {
+            var value = src[k];
+            for (var j = 0; j < lags.length; ++j) {
+                value -= coeffs[j] * dst[t - lags[j]];
+            }
+            dst[t] = value;
+        }
+    }
+
+    /**
+     * Differentiates one new value of a series online.
+     *
+     * @param value   the new value
+     * @param history preceding values of the series, at least {@code degree} of them before {@code end}
+     * @param end     index just past the last preceding value
+     * @return the differentiated value
+     */
+    public double differentiateNext(final double value, final double[] history, final int end) {
+        var result = value;
+        for (var j = 0; j < lags.length; ++j) {
+            result += coeffs[j] * history[end - lags[j]];
+        }
+        return result;
+    }
+
+    /**
+     * Integrates one new differenced value online, the inverse of {@link #differentiateNext}.
+     *
+     * @param value   the new differenced value
+     * @param history preceding values of the original series, at least {@code degree} of them before {@code end}
+     * @param end     index just past the last preceding value
+     * @return the integrated value
+     */
+    public double integrateNext(final double value, final double[] history, final int end) {
+        var result = value;
+        for (var j = 0; j < lags.length; ++j) {
+            result -= coeffs[j] * history[end - lags[j]];
+        }
+        return result;
+    }
+}
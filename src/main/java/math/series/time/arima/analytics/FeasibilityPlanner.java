@@ -0,0 +1,58 @@
+package math.series.time.arima.analytics;
+
+import lombok.val;
+import math.series.time.arima.models.ArimaOrder;
+
+/**
+ * Cheap feasibility check for candidate orders.
+ * Mirrors the data length requirements of {@link ArimaSolver#estimateARIMA} and {@link HannanRissanen#estimateARMA}
+ * using only the order and the series length, so infeasible candidates are dropped before anything is allocated.
+ */
+final class FeasibilityPlanner {
+    private FeasibilityPlanner() {
+    }
+
+    /**
+     * Checks whether a candidate leaves enough points for estimation.
+     *
+     * @param order          the candidate order
+     * @param dataLength     the length of the series the candidate is fitted on
+     * @param forecastLength the length of the forecast interval
+     * @return {@code true} if the estimator will not reject the candidate for lack of data
+     */
+    static boolean isFeasible(final ArimaOrder order, final int dataLength, final int forecastLength) {
+        if (forecastLength <= 0) {
+            return false;
+        }
+        val seasonalLag = order.D() > 0 && order.m() > 0 ? order.D() * order.m() : 0;
+        val initialConditionSize = order.d() + seasonalLag;
+        if (dataLength < initialConditionSize) {
+            return false;
+        }
+        // every differencing step must leave at least one point
+        val stationaryLength = dataLength - initialConditionSize;
+        if (initialConditionSize > 0 && stationaryLength < 1) {
+            return false;
+        }
+        // Hannan-Rissanen needs at least two lag windows of training data
+        return stationaryLength - forecastLength >= 2 * lagWindow(order);
+    }
+
+    /**
+     * Index in the original series of the first one-step residual of a candidate: its initial conditions
+     * plus one lag window of the stationary series.
+     *
+     * @param order the candidate order
+     * @return index of the first residual
+     */
+    static int firstResidual(final ArimaOrder order) {
+        val seasonalLag = order.D() > 0 && order.m() > 0 ? order.D() * order.m() : 0;
+        return order.d() + seasonalLag + lagWindow(order);
+    }
+
+    private static int lagWindow(final ArimaOrder order) {
+        val degreeP = order.p() + order.P() * order.m();
+        val degreeQ = order.q() + order.Q() * order.m();
+        return Math.max(degreeP, degreeQ) + 1;
+    }
+}
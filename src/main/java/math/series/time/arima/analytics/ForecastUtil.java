@@ -1,34 +1,32 @@
 package math.series.time.arima.analytics;
 
 import lombok.val;
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.RealMatrix;
+import math.series.time.arima.core.ArimaException;
+import org.apache.commons.math3.distribution.NormalDistribution;
 
 /**
  * Utilities for time series forecasting.
- * Contains methods for working with matrices and ARMA transformations.
+ * Contains ARMA transformations and prediction interval helpers.
  */
 public final class ForecastUtil {
     public static final double testSetPercentage = 0.15;
     public static final double maxConditionNumber = 100;
     public static final double confidence_constant_95pct = 1.959963984540054;
 
+    private static final NormalDistribution STANDARD_NORMAL = new NormalDistribution();
+
     /**
-     * Instantiates Toeplitz matrix from given input array
+     * Two-sided standard normal quantile of a confidence level, e.g. 1.96 for 0.95
      *
-     * @param input double array as input data
-     * @return a Toeplitz InsightsMatrix
+     * @param level the confidence level, strictly between 0 and 1
+     * @return the constant to multiply the forecast standard deviation with
+     * @throws ArimaException if the level is out of range
      */
-    public static RealMatrix initToeplitz(double[] input) {
-        val n = input.length;
-        val matrix = new Array2DRowRealMatrix(n, n);
-
-        for (var i = 0; i < n; i++) {
-            for (var j = 0; j < n; j++) {
-                matrix.setEntry(i, j, input[Math.abs(i - j)]);
-            }
+    public static double confidenceConstant(final double level) throws ArimaException {
+        if (!(level > 0 && level < 1)) {
+            throw new ArimaException("confidence level must be between 0 and 1: " + level);
         }
-        return matrix;
+        return STANDARD_NORMAL.inverseCumulativeProbability(0.5 + level / 2);
     }
 
     /**
@@ -40,21 +38,34 @@ public final class ForecastUtil {
      * @return an array of MA coefficients
      */
     public static double[] ARMAtoMA(final double[] ar, final double[] ma, final int lag_max) {
+        val include_psi1 = new double[lag_max];
+        ARMAtoMA(ar, ma, lag_max, include_psi1);
+        return include_psi1;
+    }
+
+    /**
+     * Converts ARMA parameters to an MA representation in a caller-supplied buffer.
+     *
+     * @param ar      the AR coefficients
+     * @param ma      the MA coefficients
+     * @param lag_max the maximum lag for calculation
+     * @param psi     output of at least {@code lag_max} values, receives the MA coefficients
+     */
+    public static void ARMAtoMA(final double[] ar, final double[] ma, final int lag_max, final double[] psi) {
+        if (lag_max <= 0) {
+            return;
+        }
         val p = ar.length;
         val q = ma.length;
-        val psi = new double[lag_max];
-
-        for (var i = 0; i < lag_max; i++) {
+        // psi[0] is 1, the coefficient of lag i + 1 goes to psi[i + 1]
+        psi[0] = 1;
+        for (var i = 0; i < lag_max - 1; i++) {
             var tmp = (i < q) ? ma[i] : 0.0;
             for (var j = 0; j < Math.min(i + 1, p); j++) {
-                tmp += ar[j] * ((i - j - 1 >= 0) ? psi[i - j - 1] : 1.0);
+                tmp += ar[j] * ((i - j - 1 >= 0) ? psi[i - j] : 1.0);
             }
-            psi[i] = tmp;
+            psi[i + 1] = tmp;
         }
-        val include_psi1 = new double[lag_max];
-        include_psi1[0] = 1;
-        System.arraycopy(psi, 0, include_psi1, 1, lag_max - 1);
-        return include_psi1;
     }
 
     /**
@@ -3,10 +3,11 @@ package math.series.time.arima.analytics;
 import lombok.val;
 import math.series.time.arima.core.ArimaException;
 import math.series.time.arima.models.ArimaParameterModel;
-import org.apache.commons.math3.linear.*;
-import org.apache.commons.math3.stat.correlation.Covariance;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealVector;
 
 import java.util.Arrays;
+import java.util.function.BooleanSupplier;
 
 /**
  * Implementation of the Hannan-Rissanen algorithm for ARMA parameter estimation.
@@ -14,6 +15,14 @@ import java.util.Arrays;
  */
 public final class HannanRissanen {
     private static final double LAMBDA = 1e-6;
+    /**
+     * Default maximum number of refinement iterations
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 5;
+    /**
+     * Default relative tolerance on the change of coefficients and holdout RMSE between iterations
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-6;
 
     /**
      * Estimates ARMA model parameters using an iterative refinement method.
@@ -22,130 +31,266 @@ public final class HannanRissanen {
      * @param params          the ARIMA model to populate with parameters
      * @param forecast_length the length of the forecast interval
      * @param maxIteration    the maximum number of iterations
+     * @return in-sample residual sum of squares and holdout RMSE of the selected parameters
      * @throws ArimaException if there is insufficient data for estimation
      */
-    public static void estimateARMA(final double[] data_orig, final ArimaParameterModel params,
-                                    final int forecast_length, final int maxIteration) {
-        val data = Arrays.copyOf(data_orig, data_orig.length);
-        val totalLength = data.length;
+    public static Estimate estimateARMA(final double[] data_orig, final ArimaParameterModel params,
+                                        final int forecast_length, final int maxIteration) {
+        return estimateARMA(data_orig, params, forecast_length, maxIteration, DEFAULT_TOLERANCE, null);
+    }
+
+    /**
+     * Estimates ARMA model parameters, optionally warm-started from the innovations of previously fitted parameters
+     * instead of zero errors, so the first regression already sees a proper MA design.
+     * Iterations stop early once both the coefficients and the holdout RMSE change by no more than
+     * {@code tolerance} relative to their magnitude; a model without MA terms does not depend on the errors
+     * and stops after the first iteration.
+     *
+     * @param data_orig       the original time series data
+     * @param params          the ARIMA model to populate with parameters
+     * @param forecast_length the length of the forecast interval
+     * @param maxIteration    the maximum number of iterations
+     * @param tolerance       relative convergence tolerance, zero to stop only on an exact fixed point
+     * @param initialErrors   residuals aligned with {@code data_orig} to start from, or {@code null} for zeros
+     * @return in-sample residual sum of squares, holdout RMSE and iteration count of the selected parameters
+     * @throws ArimaException                               if there is insufficient data for estimation
+     * @throws java.util.concurrent.CancellationException if the current thread is interrupted
+     */
+    public static Estimate estimateARMA(final double[] data_orig, final ArimaParameterModel params,
+                                        final int forecast_length, final int maxIteration,
+                                        final double tolerance, final double[] initialErrors) {
+        try (var workspace = ArimaWorkspace.acquire()) {
+            return estimateARMA(data_orig, params, forecast_length, maxIteration, tolerance, initialErrors,
+                    0, () -> false, workspace);
+        }
+    }
+
+    /**
+     * Estimates ARMA model parameters in the buffers of the given workspace.
+     * The returned residual sum of squares covers the residuals from {@code scoreFrom} on, or from the first
+     * full lag window if that comes later, so candidates with different lag windows can be scored on the same points.
+     * Once {@code outOfTime} reports true after an iteration, the iterations stop with the best parameters so far.
+     */
+    static Estimate estimateARMA(final double[] data_orig, final ArimaParameterModel params,
+                                 final int forecast_length, final int maxIteration,
+                                 final double tolerance, final double[] initialErrors,
+                                 final int scoreFrom, final BooleanSupplier outOfTime,
+                                 final ArimaWorkspace workspace) {
+        val totalLength = data_orig.length;
         val r = Math.max(params.getDegreeP(), params.getDegreeQ()) + 1;
         val length = totalLength - forecast_length;
         val size = length - r;
+        val scoreStart = Math.max(r, scoreFrom);
 
         if (length < 2 * r) {
             throw new ArimaException("Not enough data points: length=" + length + ", r=" + r);
         }
+        if (scoreStart >= length) {
+            throw new ArimaException("No residuals to score: length=" + length + ", scoreFrom=" + scoreFrom);
+        }
 
-        val errors = new double[length];
-        Arrays.fill(errors, 0, r, 0.0);
+        val data = workspace.buffer(ArimaWorkspace.Slot.SERIES, totalLength);
+        System.arraycopy(data_orig, 0, data, 0, totalLength);
+        // the holdout tail of data is overwritten by forecasts on every iteration, errors stay zero there
+        val holdout = workspace.buffer(ArimaWorkspace.Slot.HOLDOUT, forecast_length);
+        System.arraycopy(data_orig, length, holdout, 0, forecast_length);
+        val errors = workspace.buffer(ArimaWorkspace.Slot.ERRORS, totalLength);
+        Arrays.fill(errors, 0, totalLength, 0.0);
+        if (initialErrors != null) {
+            System.arraycopy(initialErrors, r, errors, r, Math.max(0, Math.min(length, initialErrors.length) - r));
+        }
 
-        // Исправлено: размерность матрицы [size][p+q]
-        val matrix = new double[size][params.getNumParamsP() + params.getNumParamsQ()];
+        val numParams = params.getNumParamsP() + params.getNumParamsQ();
+        val estimatedParams = workspace.buffer(ArimaWorkspace.Slot.ESTIMATED, numParams);
+        val bestParams = workspace.buffer(ArimaWorkspace.Slot.BEST, numParams);
+        val previousParams = workspace.buffer(ArimaWorkspace.Slot.PREVIOUS, numParams);
+        Arrays.fill(bestParams, 0, numParams, 0.0);
 
         var bestRMSE = -1.0;
-        var remainIteration = maxIteration;
-        double[] bestParams = null;
-        while (--remainIteration >= 0) {
-            val estimatedParams = iterationStep(params, data, errors, matrix, r, length, size);
+        var bestSSE = 0.0;
+        var previousRMSE = Double.NaN;
+        var iterations = 0;
+        while (iterations < maxIteration) {
+            Interrupts.check("ARMA estimation");
+            ++iterations;
+            iterationStep(params, data, errors, r, size, estimatedParams, workspace);
             params.setParamsFromVector(estimatedParams);
 
-            val forecasts = ArimaSolver.forecastARMA(params, data, length, data.length);
-            val anotherRMSE = ArimaSolver.computeRMSE(
-                    data,
-                    forecasts,
-                    length,
-                    0,
-                    forecast_length
-            );
-            updateErrors(data, errors, params, r, size);
+            val anotherRMSE = updateErrorsAndScoreHoldout(data, errors, params, r, length, totalLength, holdout);
             if (bestRMSE < 0 || anotherRMSE < bestRMSE) {
-                bestParams = estimatedParams;
+                System.arraycopy(estimatedParams, 0, bestParams, 0, numParams);
                 bestRMSE = anotherRMSE;
+                bestSSE = sumOfSquares(errors, scoreStart, length);
             }
+            if (params.getNumParamsQ() == 0
+                    || (iterations > 1 && hasConverged(estimatedParams, previousParams, numParams,
+                    anotherRMSE, previousRMSE, tolerance))
+                    || outOfTime.getAsBoolean()) {
+                break;
+            }
+            System.arraycopy(estimatedParams, 0, previousParams, 0, numParams);
+            previousRMSE = anotherRMSE;
         }
         params.setParamsFromVector(bestParams);
+        return new Estimate(bestSSE, length - scoreStart, bestRMSE, iterations);
     }
 
-    private static double[] iterationStep(
-            final ArimaParameterModel params,
-            final double[] data, final double[] errors,
-            final double[][] matrix, final int r, final int length, final int size) {
-
-        fillMatrix(matrix, params, data, errors, r, size);
-        val zt = new Array2DRowRealMatrix(matrix, false);
-        val x = new ArrayRealVector(data, r, size);
+    private static double sumOfSquares(final double[] values, final int from, final int to) {
+        var sum = 0.0;
+        for (var j = from; j < to; ++j) {
+            sum += values[j] * values[j];
+        }
+        return sum;
+    }
 
-        RealMatrix ztz = zt.transpose().multiply(zt);
+    /**
+     * Convergence test on the largest coefficient change and the holdout RMSE change.
+     */
+    private static boolean hasConverged(final double[] current, final double[] previous, final int numParams,
+                                        final double rmse, final double previousRMSE, final double tolerance) {
+        var maxChange = 0.0;
+        var maxMagnitude = 0.0;
+        for (var j = 0; j < numParams; ++j) {
+            maxChange = Math.max(maxChange, Math.abs(current[j] - previous[j]));
+            maxMagnitude = Math.max(maxMagnitude, Math.abs(current[j]));
+        }
+        // coefficients are dimensionless, the RMSE carries the scale of the data and is compared relatively
+        return maxChange <= tolerance * (1.0 + maxMagnitude)
+                && Math.abs(rmse - previousRMSE) <= tolerance * Math.max(Math.abs(rmse), Math.abs(previousRMSE));
+    }
 
-        RealVector ztx = zt.transpose().operate(x);
+    private static void iterationStep(
+            final ArimaParameterModel params,
+            final double[] data, final double[] errors,
+            final int r, final int size, final double[] estimatedParams,
+            final ArimaWorkspace workspace) {
 
-        try {
-            // Matrix regularization to ensure positive certainty
-            final RealMatrix regularizedZtz = ztz.copy();
-            for (int i = 0; i < regularizedZtz.getRowDimension(); i++) {
-                regularizedZtz.addToEntry(i, i, LAMBDA);
-            }
-            return new CholeskyDecomposition(regularizedZtz).getSolver().solve(ztx).toArray();
-        } catch (NonPositiveDefiniteMatrixException e) {
-            return new LUDecomposition(ztz).getSolver().solve(ztx).toArray();
+        val equations = workspace.equations();
+        equations.build(params, data, errors, r, size);
+        // Matrix regularization to ensure positive certainty, LU of the plain matrix otherwise;
+        // the ridge is relative to the mean diagonal, so the estimate does not depend on the scale of the data
+        val dimension = equations.dimension();
+        var trace = 0.0;
+        for (var j = 0; j < dimension; ++j) {
+            trace += equations.ztz()[j * dimension + j];
         }
+        val ridge = LAMBDA * (trace > 0 ? trace / dimension : 1.0);
+        workspace.solver().solve(equations.ztz(), equations.ztx(), dimension, ridge, estimatedParams);
     }
 
-    private static void fillMatrix(double[][] matrix, ArimaParameterModel params,
-                                   double[] data, double[] errors, int r, int size) {
-        var colIdx = 0;
-        // Filling in the AR part
-        for (var pIdx : params.getOffsetsAR()) {
-            for (var i = 0; i < size; i++) {
-                matrix[i][colIdx] = data[r - pIdx + i];
-            }
-            colIdx++;
-        }
-        // Filling in the MA part
-        for (var qIdx : params.getOffsetsMA()) {
-            for (var i = 0; i < size; i++) {
-                matrix[i][colIdx] = errors[r - qIdx + i];
-            }
-            colIdx++;
+    /**
+     * Single ARMA recursion pass: replaces the errors with the one-step in-sample residuals of the current
+     * parameters, then continues into the holdout interval, writing the forecasts over the holdout part of data.
+     *
+     * @param data        series whose values from {@code length} on are overwritten by the forecasts
+     * @param errors      residual buffer, zero from {@code length} to {@code totalLength}
+     * @param length      size of the in-sample part
+     * @param totalLength size of the in-sample part and the holdout interval
+     * @param holdout     actual values of the holdout interval
+     * @return RMSE of the forecasts on the holdout interval
+     */
+    private static double updateErrorsAndScoreHoldout(final double[] data, final double[] errors,
+                                                      final ArimaParameterModel params, final int r,
+                                                      final int length, final int totalLength,
+                                                      final double[] holdout) {
+        updateErrors(data, errors, params, r, length - r);
+        var squareSum = 0.0;
+        for (var j = length; j < totalLength; ++j) {
+            val forecast = params.forecastOnePointARMA(data, errors, j);
+            data[j] = forecast;
+            val error = holdout[j - length] - forecast;
+            squareSum += error * error;
         }
+        return Math.sqrt(squareSum / (totalLength - length));
     }
 
+    /**
+     * Replaces the errors with the one-step in-sample residuals of the current parameters.
+     */
     private static void updateErrors(double[] data, double[] errors,
                                      ArimaParameterModel params, int r, int size) {
-        val trainForecasts = new ArrayRealVector(
-                ArimaSolver.forecastARMA(params, data, r, data.length)
-        );
-        for (var j = 0; j < size; ++j) {
-            errors[j + r] = data[j + r] - trainForecasts.getEntry(j);
+        for (var j = r; j < r + size; ++j) {
+            errors[j] = data[j] - params.forecastOnePointARMA(data, errors, j);
         }
     }
 
+    /**
+     * Fits AR(p) coefficients by solving the Yule-Walker equations with the Levinson-Durbin recursion.
+     *
+     * @param data the time series
+     * @param p    the autoregressive order
+     * @return AR coefficients for lags {@code 1 .. p}
+     */
     public static RealVector fit(final double[] data, final int p) {
-        val rVector = getVector(data, p);
-        // Creating the Greenhouse Matrix
-        val toeplitz = ForecastUtil.initToeplitz(rVector.getSubVector(0, p).toArray());
-        // Solving a system with a check for degeneracy
-        try {
-            return new CholeskyDecomposition(toeplitz).getSolver().solve(rVector.getSubVector(1, p));
-        } catch (NonPositiveDefiniteMatrixException e) {
-            return new LUDecomposition(toeplitz).getSolver().solve(rVector.getSubVector(1, p));
+        validateOrder(data, p);
+        val phi = new double[p];
+        levinsonDurbin(Autocovariance.compute(data, p), p, phi, new double[p]);
+        return new ArrayRealVector(phi, false);
+    }
+
+    /**
+     * Partial autocorrelations, obtained as the last coefficient of each Levinson-Durbin step.
+     *
+     * @param data   the time series
+     * @param maxLag the maximum lag
+     * @return partial autocorrelations for lags {@code 1 .. maxLag}
+     */
+    public static double[] partialAutocorrelations(final double[] data, final int maxLag) {
+        validateOrder(data, maxLag);
+        val pacf = new double[maxLag];
+        levinsonDurbin(Autocovariance.compute(data, maxLag), maxLag, new double[maxLag], pacf);
+        return pacf;
+    }
+
+    /**
+     * Levinson-Durbin recursion for the Toeplitz system of the Yule-Walker equations, O(p²).
+     *
+     * @param acov autocovariances for lags {@code 0 .. p}
+     * @param p    the autoregressive order
+     * @param phi  output AR coefficients of size {@code p}
+     * @param pacf output partial autocorrelations of size {@code p}
+     * @return innovation variance of the AR(p) fit
+     */
+    private static double levinsonDurbin(final double[] acov, final int p, final double[] phi, final double[] pacf) {
+        var variance = acov[0];
+        val previous = new double[p];
+        for (var k = 1; k <= p; k++) {
+            if (variance <= 0.0) {
+                throw new ArimaException("Degenerate autocovariance at lag " + k + ": variance=" + variance);
+            }
+            var acc = acov[k];
+            for (var j = 1; j < k; j++) {
+                acc -= phi[j - 1] * acov[k - j];
+            }
+            val kappa = acc / variance;
+            System.arraycopy(phi, 0, previous, 0, k - 1);
+            for (var j = 1; j < k; j++) {
+                phi[j - 1] = previous[j - 1] - kappa * previous[k - j - 1];
+            }
+            phi[k - 1] = kappa;
+            pacf[k - 1] = kappa;
+            variance *= 1.0 - kappa * kappa;
         }
+        return variance;
     }
 
-    private static RealVector getVector(double[] data, int p) {
+    private static void validateOrder(final double[] data, final int p) {
         val length = data.length;
         if (length == 0 || p < 1) {
-            throw new RuntimeException("Invalid parameters: length=" + length + ", p=" + p);
-        }
-        // Correct calculation of autocovariance
-        val dataMatrix = new Array2DRowRealMatrix(new double[][]{data});
-        val covariance = new Covariance(dataMatrix);
-        val covarianceMatrix = covariance.getCovarianceMatrix();
-
-        val rVector = new ArrayRealVector(p + 1);
-        for (var j = 0; j <= p; j++) {
-            rVector.setEntry(j, covarianceMatrix.getEntry(0, j));
+            throw new ArimaException("Invalid parameters: length=" + length + ", p=" + p);
         }
-        return rVector;
     }
-}
\ No newline at end of file
+
+    /**
+     * Result of ARMA estimation.
+     *
+     * @param residualSumOfSquares sum of squared one-step in-sample residuals of the selected parameters,
+     *                            starting at the first point with a full lag window or at the requested
+     *                            common scoring start
+     * @param residualCount        number of those residuals
+     * @param holdoutRmse          RMSE of the selected parameters on the holdout interval
+     * @param iterations           number of iterations actually run
+     */
+    public record Estimate(double residualSumOfSquares, int residualCount, double holdoutRmse, int iterations) {
+    }
+}
@@ -6,6 +6,7 @@ import math.series.time.arima.core.ArimaException;
 /**
  * Helper class for differentiation and integration of time series.
  * Contains methods for transformations required in ARIMA modeling.
+ * Array loops run on {@link ArrayKernels}, vectorized when the Vector API module is available.
  */
 public class Integrator {
     /**
@@ -61,9 +62,7 @@ public class Integrator {
         validateInputs(true, src, dst, initial, d);
         copyInitialConditions(src, dst, initial, d, true);
 
-        for (int j = d, k = 0; j < src.length; ++j, ++k) {
-            dst[k] = src[j] - src[k]; // src[k] для несезонного дифференцирования
-        }
+        ArrayKernels.INSTANCE.difference(src, dst, d);
     }
 
     /**
@@ -92,9 +91,7 @@ public class Integrator {
      * @param shiftAmount shift amount
      */
     public static void shift(double[] inputData, final double shiftAmount) {
-        for (int i = 0; i < inputData.length; i++) {
-            inputData[i] += shiftAmount;
-        }
+        ArrayKernels.INSTANCE.shift(inputData, shiftAmount);
     }
 
     /**
@@ -107,11 +104,7 @@ public class Integrator {
         if (data.length == 0) {
             return 0.0;
         }
-        var sum = 0.0;
-        for (double datum : data) {
-            sum += datum;
-        }
-        return sum / data.length;
+        return ArrayKernels.INSTANCE.sum(data) / data.length;
     }
 
     /**
@@ -122,11 +115,6 @@ public class Integrator {
      */
     public static double computeVariance(final double[] data) {
         val mean = computeMean(data);
-        var variance = 0.0;
-        for (double datum : data) {
-            val diff = datum - mean;
-            variance += diff * diff;
-        }
-        return variance / (data.length - 1.0);
+        return ArrayKernels.INSTANCE.sumSquaredDeviations(data, mean) / (data.length - 1.0);
     }
 }
@@ -0,0 +1,23 @@
+package math.series.time.arima.analytics;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation points of the order search and the estimator.
+ */
+final class Interrupts {
+    private Interrupts() {
+    }
+
+    /**
+     * Stops the computation if the current thread has been interrupted. The interrupt status is kept.
+     *
+     * @param stage what is being computed, for the message
+     * @throws CancellationException if the current thread is interrupted
+     */
+    static void check(final String stage) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException(stage + " interrupted");
+        }
+    }
+}
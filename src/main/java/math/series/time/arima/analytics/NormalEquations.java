@@ -0,0 +1,89 @@
+package math.series.time.arima.analytics;
+
+import lombok.val;
+import math.series.time.arima.models.ArimaParameterModel;
+
+/**
+ * Normal equations ZᵀZ·β = Zᵀx of the Hannan-Rissanen regression.
+ * The design matrix Z is never materialized: its columns are lagged windows of the data (AR part)
+ * and of the errors (MA part), so the products are accumulated straight from those arrays.
+ * Instances are scratch buffers owned by an {@link ArimaWorkspace} that only grow,
+ * so a warmed-up workspace builds the system without allocating.
+ */
+final class NormalEquations {
+
+    private double[] ztz = new double[0];
+    private double[] ztx = new double[0];
+    private int dimension;
+
+    NormalEquations() {
+    }
+
+    /**
+     * Accumulates ZᵀZ and Zᵀx for rows {@code r .. r + size - 1}.
+     * Sums run over rows in ascending order, so the result is bit-identical to multiplying the materialized matrices.
+     *
+     * @param params model providing AR and MA lags; AR columns come first
+     * @param data   the time series
+     * @param errors the current error estimates
+     * @param r      index of the first row
+     * @param size   number of rows
+     */
+    void build(final ArimaParameterModel params, final double[] data, final double[] errors,
+               final int r, final int size) {
+        val offsetsAR = params.getOffsetsAR();
+        val offsetsMA = params.getOffsetsMA();
+        val np = offsetsAR.length;
+        val k = np + offsetsMA.length;
+        ensureCapacity(k);
+        dimension = k;
+
+        for (var a = 0; a < k; a++) {
+            val srcA = a < np ? data : errors;
+            val baseA = r - (a < np ? offsetsAR[a] : offsetsMA[a - np]);
+            for (var b = a; b < k; b++) {
+                val srcB = b < np ? data : errors;
+                val baseB = r - (b < np ? offsetsAR[b] : offsetsMA[b - np]);
+                var sum = 0.0;
+                for (var i = 0; i < size; i++) {
+                    sum += srcA[baseA + i] * srcB[baseB + i];
+                }
+                ztz[a * k + b] = sum;
+                ztz[b * k + a] = sum;
+            }
+            var sum = 0.0;
+            for (var i = 0; i < size; i++) {
+                sum += srcA[baseA + i] * data[r + i];
+            }
+            ztx[a] = sum;
+        }
+    }
+
+    /**
+     * @return number of unknowns
+     */
+    int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @return ZᵀZ in row-major order; only the first {@code dimension²} entries are meaningful
+     */
+    double[] ztz() {
+        return ztz;
+    }
+
+    /**
+     * @return Zᵀx; only the first {@code dimension} entries are meaningful
+     */
+    double[] ztx() {
+        return ztx;
+    }
+
+    private void ensureCapacity(final int k) {
+        if (ztz.length < k * k) {
+            ztz = new double[k * k];
+            ztx = new double[k];
+        }
+    }
+}
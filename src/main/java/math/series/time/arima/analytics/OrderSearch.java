@@ -0,0 +1,420 @@
+package math.series.time.arima.analytics;
+
+import lombok.Getter;
+import lombok.val;
+import math.series.time.arima.models.ArimaModel;
+import math.series.time.arima.models.ArimaOrder;
+import math.series.time.arima.models.ArimaParameterModel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Order search for the auto-ARIMA procedure: either the exhaustive grid or the stepwise search
+ * of Hyndman and Khandakar (2008).
+ * Every candidate is fitted on its own parameter model and reads the differenced training data from a shared
+ * {@link DifferencingLattice}, so candidates can be evaluated concurrently;
+ * the reduction always walks candidates in enumeration order, which keeps the winner independent of scheduling.
+ * With a time limit the candidates are ordered from the simplest, and the search stops at the deadline
+ * with the best candidate fitted so far; a candidate still being estimated at the deadline keeps the parameters
+ * of its last Hannan-Rissanen iteration.
+ * <p>
+ * All candidates that a search may compare are scored on the same observations: from the first point where every
+ * feasible candidate of the search has a residual (see {@link ArimaSolver#estimateARIMA}).
+ */
+final class OrderSearch {
+    private static final int MAX_P = 3;
+    private static final int MAX_Q = 3;
+    private static final int MAX_SEASONAL_P = 2;
+    private static final int MAX_SEASONAL_D = 2;
+    private static final int MAX_SEASONAL_Q = 2;
+
+    private final double[] data;
+    private final int forecastSize;
+    private final SearchOptions options;
+    private final DifferencingLattice lattice;
+    /**
+     * Number of candidates dropped by {@link FeasibilityPlanner} without being fitted.
+     */
+    @Getter
+    private int prunedCandidates;
+    private final AtomicInteger evaluatedCandidates = new AtomicInteger();
+    private final long deadline;  // on the clock of the options, meaningful only with a time limit
+    private int scoreStart;  // first original index all compared candidates are scored from
+    /**
+     * Whether the time limit ran out before all candidates were fitted.
+     */
+    @Getter
+    private volatile boolean timeLimited;
+
+    /**
+     * @param data         stationary data the candidates are fitted on
+     * @param forecastSize the length of the forecast interval
+     * @param options      search options
+     */
+    OrderSearch(final double[] data, final int forecastSize, final SearchOptions options) {
+        this.data = data;
+        this.forecastSize = forecastSize;
+        this.options = options;
+        this.deadline = options.getTimeLimit() == null
+                ? 0
+                : options.getNanoClock().getAsLong() + options.getTimeLimit().toNanos();
+        this.lattice = new DifferencingLattice(data, data.length);
+    }
+
+    /**
+     * Runs the search with the strategy of the options.
+     *
+     * @param d the degree of differencing
+     * @param m the number of periods in each season
+     * @return the best candidate, or {@code null} if no candidate could be fitted
+     */
+    Candidate run(final int d, final int m) {
+        return switch (options.getStrategy()) {
+            case EXHAUSTIVE -> exhaustive(d, m);
+            case STEPWISE -> stepwise(d, m);
+        };
+    }
+
+    /**
+     * Enumerates the full (p, q, P, D, Q) grid for the given non-seasonal differencing order.
+     *
+     * @param d the degree of differencing
+     * @param m the number of periods in each season
+     * @return candidates in search order
+     */
+    static List<ArimaOrder> grid(final int d, final int m) {
+        val orders = new ArrayList<ArimaOrder>(
+                (MAX_P + 1) * (MAX_Q + 1) * (MAX_SEASONAL_P + 1) * (MAX_SEASONAL_D + 1) * (MAX_SEASONAL_Q + 1));
+        for (int p = 0; p <= MAX_P; ++p) {
+            for (int q = 0; q <= MAX_Q; ++q) {
+                for (int P = 0; P <= MAX_SEASONAL_P; ++P) {
+                    for (int D = 0; D <= MAX_SEASONAL_D; ++D) {
+                        for (int Q = 0; Q <= MAX_SEASONAL_Q; ++Q) {
+                            orders.add(new ArimaOrder(p, d, q, P, D, Q, m));
+                        }
+                    }
+                }
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Exhaustive search: fits every feasible order of the grid.
+     *
+     * @param d the degree of differencing
+     * @param m the number of periods in each season
+     * @return the best candidate, or {@code null} if no candidate could be fitted
+     */
+    Candidate exhaustive(final int d, final int m) {
+        val grid = grid(d, m);
+        scoreStart = scoreStart(grid);
+        return search(grid);
+    }
+
+    /**
+     * Stepwise search: fits the seed models, then repeatedly fits the unvisited neighbours of the current
+     * best order and moves to the best of them while it improves the AIC.
+     * There is no seasonal unit-root test in this library, so D is searched as one more stepwise dimension.
+     * Candidates are scored from the common start of the whole grid, since any of them may be visited.
+     *
+     * @param d the degree of differencing
+     * @param m the number of periods in each season
+     * @return the best candidate, or {@code null} if no candidate could be fitted
+     */
+    Candidate stepwise(final int d, final int m) {
+        scoreStart = scoreStart(grid(d, m));
+        val visited = new HashSet<ArimaOrder>();
+        var best = search(unvisited(visited, List.of(
+                new ArimaOrder(2, d, 2, 1, 0, 1, m),
+                new ArimaOrder(0, d, 0, 0, 0, 0, m),
+                new ArimaOrder(1, d, 0, 1, 0, 0, m),
+                new ArimaOrder(0, d, 1, 0, 0, 1, m)
+        )));
+        while (best != null && !timeLimited) {
+            val neighbours = unvisited(visited, neighbours(best.order()));
+            if (neighbours.isEmpty()) {
+                break;
+            }
+            val another = better(best, search(neighbours));
+            if (another == best) {
+                break;
+            }
+            best = another;
+        }
+        return best;
+    }
+
+    /**
+     * Warm-started search around a previously fitted model: its order first, then its p, q, P and Q neighbours
+     * with the differencing orders fixed. Every candidate starts from the innovations of the previous
+     * coefficients on the new data.
+     *
+     * @param previous fitted parameters of the previous model
+     * @return the best candidate, or {@code null} if no candidate could be fitted
+     */
+    Candidate refine(final ArimaParameterModel previous) {
+        val order = previous.getOrder();
+        val orders = new ArrayList<ArimaOrder>();
+        orders.add(order);
+        for (val neighbour : neighbours(order)) {
+            if (neighbour.D() == order.D() && inGrid(neighbour) && !orders.contains(neighbour)) {
+                orders.add(neighbour);
+            }
+        }
+        scoreStart = scoreStart(orders);
+        val differenced = lattice.get(order).dataStationary();
+        val innovations = new double[differenced.length];
+        for (var j = Math.max(previous.getDegreeP(), previous.getDegreeQ()); j < differenced.length; ++j) {
+            innovations[j] = differenced[j] - previous.forecastOnePointARMA(differenced, innovations, j);
+        }
+        return search(orders, innovations);
+    }
+
+    /**
+     * Neighbourhood of an order: p, q, P, Q and D moved by one, and p with q, P with Q moved together.
+     */
+    private static List<ArimaOrder> neighbours(final ArimaOrder o) {
+        val result = new ArrayList<ArimaOrder>();
+        for (var step = -1; step <= 1; step += 2) {
+            result.add(new ArimaOrder(o.p() + step, o.d(), o.q(), o.P(), o.D(), o.Q(), o.m()));
+            result.add(new ArimaOrder(o.p(), o.d(), o.q() + step, o.P(), o.D(), o.Q(), o.m()));
+            result.add(new ArimaOrder(o.p(), o.d(), o.q(), o.P() + step, o.D(), o.Q(), o.m()));
+            result.add(new ArimaOrder(o.p(), o.d(), o.q(), o.P(), o.D(), o.Q() + step, o.m()));
+            result.add(new ArimaOrder(o.p() + step, o.d(), o.q() + step, o.P(), o.D(), o.Q(), o.m()));
+            result.add(new ArimaOrder(o.p(), o.d(), o.q(), o.P() + step, o.D(), o.Q() + step, o.m()));
+            result.add(new ArimaOrder(o.p(), o.d(), o.q(), o.P(), o.D() + step, o.Q(), o.m()));
+        }
+        return result;
+    }
+
+    /**
+     * Filters out visited and out-of-grid orders and marks the rest as visited.
+     */
+    private static List<ArimaOrder> unvisited(final Set<ArimaOrder> visited, final List<ArimaOrder> orders) {
+        val result = new ArrayList<ArimaOrder>(orders.size());
+        for (val order : orders) {
+            if (inGrid(order) && visited.add(order)) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * First original index at which every feasible order of the list has a one-step residual.
+     */
+    private int scoreStart(final List<ArimaOrder> orders) {
+        var start = 0;
+        for (val order : orders) {
+            if (FeasibilityPlanner.isFeasible(order, data.length, forecastSize)) {
+                start = Math.max(start, FeasibilityPlanner.firstResidual(order));
+            }
+        }
+        return start;
+    }
+
+    private static boolean inGrid(final ArimaOrder o) {
+        return o.p() >= 0 && o.p() <= MAX_P
+                && o.q() >= 0 && o.q() <= MAX_Q
+                && o.P() >= 0 && o.P() <= MAX_SEASONAL_P
+                && o.D() >= 0 && o.D() <= MAX_SEASONAL_D
+                && o.Q() >= 0 && o.Q() <= MAX_SEASONAL_Q;
+    }
+
+    /**
+     * Fits all feasible candidates and returns the one with the lowest AIC.
+     * Candidates are fitted on the executor of the options, or on the calling thread if it has none.
+     *
+     * @param orders candidates in search order; ties are resolved in favour of the earlier one
+     * @return the best candidate, or {@code null} if no candidate could be fitted
+     */
+    Candidate search(final List<ArimaOrder> orders) {
+        return search(orders, null);
+    }
+
+    private Candidate search(final List<ArimaOrder> orders, final double[] innovations) {
+        val executor = options.getExecutor();
+        val feasible = feasible(orders);
+        if (hasTimeLimit()) {
+            // anytime search: the simplest orders first, so an early stop still leaves a sensible model
+            feasible.sort(Comparator.comparingInt(OrderSearch::complexity));
+        }
+        Candidate best = null;
+        if (executor == null) {
+            for (val order : feasible) {
+                Interrupts.check("Order search");
+                if (isPastDeadline()) {
+                    timeLimited = true;
+                    break;
+                }
+                best = better(best, evaluate(order, innovations));
+            }
+            return best;
+        }
+        if (executor instanceof ForkJoinPool pool && ForkJoinTask.getPool() == pool) {
+            // already a task of the same pool (ArimaBatch): fork the candidates and join them, so the waiting
+            // worker runs or steals candidates instead of blocking in get()
+            val tasks = new ArrayList<ForkJoinTask<Candidate>>(feasible.size());
+            for (val order : feasible) {
+                tasks.add(ForkJoinTask.adapt(() -> evaluateBeforeDeadline(order, innovations)).fork());
+            }
+            for (val task : tasks) {
+                best = better(best, task.join());
+            }
+            return best;
+        }
+        val futures = new ArrayList<CompletableFuture<Candidate>>(feasible.size());
+        for (val order : feasible) {
+            futures.add(CompletableFuture.supplyAsync(() -> evaluate(order, innovations), executor));
+        }
+        try {
+            for (val future : futures) {
+                best = better(best, await(future));
+            }
+        } catch (final TimeoutException ex) {
+            timeLimited = true;
+            for (val future : futures) {
+                future.cancel(false);
+                if (future.isDone() && !future.isCompletedExceptionally()) {
+                    best = better(best, future.getNow(null));
+                }
+            }
+        } catch (final CancellationException ex) {
+            // candidates that have not started yet are skipped
+            for (val future : futures) {
+                future.cancel(false);
+            }
+            throw ex;
+        }
+        return best;
+    }
+
+    /**
+     * Getter for the number of candidates whose fit was started
+     *
+     * @return number of evaluated candidates
+     */
+    int getEvaluatedCandidates() {
+        return evaluatedCandidates.get();
+    }
+
+    private boolean hasTimeLimit() {
+        return options.getTimeLimit() != null;
+    }
+
+    private boolean isPastDeadline() {
+        return hasTimeLimit() && options.getNanoClock().getAsLong() - deadline >= 0;
+    }
+
+    /**
+     * Number of ARMA terms and seasonal differences of an order, the cost proxy of the anytime search.
+     */
+    private static int complexity(final ArimaOrder o) {
+        return o.p() + o.q() + o.P() + o.Q() + o.D();
+    }
+
+    /**
+     * Waits for a candidate fitted on the executor, at most until the deadline if there is one;
+     * unlike {@code join()} the wait responds to interrupts.
+     */
+    private Candidate await(final CompletableFuture<Candidate> future) throws TimeoutException {
+        try {
+            return hasTimeLimit()
+                    ? future.get(deadline - options.getNanoClock().getAsLong(), TimeUnit.NANOSECONDS)
+                    : future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Order search interrupted");
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private List<ArimaOrder> feasible(final List<ArimaOrder> orders) {
+        val result = new ArrayList<ArimaOrder>(orders.size());
+        for (val order : orders) {
+            if (FeasibilityPlanner.isFeasible(order, data.length, forecastSize)) {
+                result.add(order);
+            } else {
+                ++prunedCandidates;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fits a candidate unless the deadline has passed; forked candidates cannot be abandoned by a timed wait.
+     */
+    private Candidate evaluateBeforeDeadline(final ArimaOrder order, final double[] innovations) {
+        if (isPastDeadline()) {
+            timeLimited = true;
+            return null;
+        }
+        return evaluate(order, innovations);
+    }
+
+    /**
+     * Fits a single candidate.
+     *
+     * @param order       the candidate order
+     * @param innovations stationary residuals to warm-start the estimation from, or {@code null}
+     * @return the fitted candidate, or {@code null} if the order cannot be fitted on the data
+     */
+    Candidate evaluate(final ArimaOrder order, final double[] innovations) {
+        evaluatedCandidates.incrementAndGet();
+        try {
+            val differenced = lattice.get(order);
+            val params = order.newParameterModel();
+            val model = ArimaSolver.estimateARIMA(
+                    params, data,
+                    data.length,
+                    data.length + forecastSize,
+                    differenced,
+                    innovations,
+                    options,
+                    scoreStart,
+                    this::isPastDeadline
+            );
+            if (isPastDeadline()) {
+                // the estimate may have been cut short; no later candidate is started
+                timeLimited = true;
+            }
+            return new Candidate(order, model, model.getAic());
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            // Skipping invalid parameter combinations
+            return null;
+        }
+    }
+
+    private static Candidate better(final Candidate best, final Candidate another) {
+        if (another == null) {
+            return best;
+        }
+        val bestAIC = best == null ? Double.MAX_VALUE : best.aic();
+        return another.aic() < bestAIC ? another : best;
+    }
+
+    /**
+     * Fitted candidate with its information criterion.
+     */
+    record Candidate(ArimaOrder order, ArimaModel model, double aic) {
+    }
+}
@@ -0,0 +1,49 @@
+package math.series.time.arima.analytics;
+
+import lombok.val;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs a body for every index of {@code from .. to - 1}, splitting the range in halves down to single indices,
+ * so idle workers steal the remaining halves and items of very different cost balance out.
+ */
+final class RangeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final transient IntConsumer body;
+
+    private RangeTask(final int from, final int to, final IntConsumer body) {
+        this.from = from;
+        this.to = to;
+        this.body = body;
+    }
+
+    /**
+     * Runs the body for every index of the range on the pool and waits for all of them.
+     *
+     * @param pool pool to run on
+     * @param from first index, inclusive
+     * @param to   last index, exclusive
+     * @param body work for one index
+     */
+    static void forEach(final ForkJoinPool pool, final int from, final int to, final IntConsumer body) {
+        if (from < to) {
+            pool.invoke(new RangeTask(from, to, body));
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from == 1) {
+            body.accept(from);
+            return;
+        }
+        val middle = (from + to) >>> 1;
+        invokeAll(new RangeTask(from, middle, body), new RangeTask(middle, to, body));
+    }
+}
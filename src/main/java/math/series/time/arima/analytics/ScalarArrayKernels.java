@@ -0,0 +1,70 @@
+package math.series.time.arima.analytics;
+
+import lombok.val;
+
+/**
+ * Plain loop implementation of {@link ArrayKernels}.
+ */
+final class ScalarArrayKernels implements ArrayKernels {
+    @Override
+    public void difference(final double[] src, final double[] dst, final int lag) {
+        for (int j = lag, k = 0; j < src.length; ++j, ++k) {
+            dst[k] = src[j] - src[k];
+        }
+    }
+
+    @Override
+    public void addScaled(final double[] src, final int srcOffset, final double[] dst, final int length,
+                          final double factor) {
+        for (var k = 0; k < length; ++k) {
+            dst[k] += factor * src[k + srcOffset];
+        }
+    }
+
+    @Override
+    public void shift(final double[] data, final double amount) {
+        for (var i = 0; i < data.length; i++) {
+            data[i] += amount;
+        }
+    }
+
+    @Override
+    public double sum(final double[] data) {
+        var sum = 0.0;
+        for (val datum : data) {
+            sum += datum;
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumSquaredDeviations(final double[] data, final double mean) {
+        var sum = 0.0;
+        for (val datum : data) {
+            val diff = datum - mean;
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumSquaredErrors(final double[] left, final int leftOffset, final double[] right,
+                                   final int startIndex, final int endIndex) {
+        var sum = 0.0;
+        for (var i = startIndex; i < endIndex; ++i) {
+            val error = left[i + leftOffset] - right[i];
+            sum += error * error;
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumAbsoluteErrors(final double[] left, final int leftOffset, final double[] right,
+                                    final int startIndex, final int endIndex) {
+        var sum = 0.0;
+        for (var i = startIndex; i < endIndex; ++i) {
+            sum += Math.abs(left[i + leftOffset] - right[i]);
+        }
+        return sum;
+    }
+}
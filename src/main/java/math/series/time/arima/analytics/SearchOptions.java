@@ -0,0 +1,55 @@
+package math.series.time.arima.analytics;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * Options of the auto-ARIMA order search.
+ */
+@Getter
+@Builder(toBuilder = true)
+public final class SearchOptions {
+    /**
+     * Strategy used to walk candidate orders.
+     */
+    @Builder.Default
+    private final SearchStrategy strategy = SearchStrategy.EXHAUSTIVE;
+    /**
+     * Executor to fit candidates on, or {@code null} to fit them on the calling thread.
+     */
+    private final Executor executor;
+    /**
+     * Maximum number of Hannan-Rissanen iterations per candidate.
+     */
+    @Builder.Default
+    private final int maxIterations = HannanRissanen.DEFAULT_MAX_ITERATIONS;
+    /**
+     * Relative tolerance on the change of coefficients and holdout RMSE that stops the Hannan-Rissanen iterations.
+     */
+    @Builder.Default
+    private final double tolerance = HannanRissanen.DEFAULT_TOLERANCE;
+    /**
+     * Time budget of the order search, or {@code null} for none. With a budget, simpler orders are fitted first
+     * and the best model found when the budget runs out is returned.
+     */
+    private final Duration timeLimit;
+    /**
+     * Monotonic clock in nanoseconds the time limit is measured on, {@link System#nanoTime} by default.
+     * The deadline is checked between candidates and after every Hannan-Rissanen iteration.
+     */
+    @Builder.Default
+    private final LongSupplier nanoClock = System::nanoTime;
+
+    /**
+     * Default options: exhaustive search on the calling thread.
+     *
+     * @return default options
+     */
+    public static SearchOptions defaults() {
+        return builder().build();
+    }
+}
@@ -0,0 +1,16 @@
+package math.series.time.arima.analytics;
+
+/**
+ * Strategy used by the auto-ARIMA procedure to select the model order.
+ */
+public enum SearchStrategy {
+    /**
+     * Fits every (p, q, P, D, Q) combination of the order grid.
+     */
+    EXHAUSTIVE,
+    /**
+     * Stepwise neighbourhood search of Hyndman and Khandakar (2008): starts from a few seed models
+     * and moves to the best neighbouring order until no neighbour improves the AIC.
+     */
+    STEPWISE
+}
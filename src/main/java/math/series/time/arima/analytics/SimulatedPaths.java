@@ -0,0 +1,145 @@
+package math.series.time.arima.analytics;
+
+import lombok.Getter;
+import lombok.val;
+import math.series.time.arima.core.ArimaException;
+import math.series.time.arima.models.PredictionInterval;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Future sample paths of a bootstrap simulation, stored path by path in one primitive matrix.
+ * Quantiles are empirical, so intervals follow the shape of the residual distribution instead of assuming
+ * it is Gaussian.
+ */
+public final class SimulatedPaths {
+    @Getter
+    private final int pathCount;
+    @Getter
+    private final int horizon;
+    private final double[] values;  // values[path * horizon + step]
+
+    SimulatedPaths(final int pathCount, final int horizon, final double[] values) {
+        this.pathCount = pathCount;
+        this.horizon = horizon;
+        this.values = values;
+    }
+
+    /**
+     * Getter for one simulated value
+     *
+     * @param path the path index
+     * @param step the forecast step, 0 for the first point past the training data
+     * @return the simulated value
+     */
+    public double getValue(final int path, final int step) {
+        if (path < 0 || path >= pathCount || step < 0 || step >= horizon) {
+            throw new ArimaException("invalid path or step: " + path + ", " + step);
+        }
+        return values[path * horizon + step];
+    }
+
+    /**
+     * Empirical quantile of every forecast step
+     *
+     * @param probability the probability, between 0 and 1
+     * @return one quantile per forecast step
+     */
+    public double[] quantile(final double probability) {
+        return quantiles(probability)[0];
+    }
+
+    /**
+     * Empirical quantiles of every forecast step, linearly interpolated between order statistics.
+     * The order statistics of each step are found by selection in ascending order, each one narrowing the search
+     * for the next, so a step costs O(paths) per probability instead of a full sort.
+     *
+     * @param probabilities the probabilities, between 0 and 1
+     * @return quantiles indexed by probability, then by forecast step
+     * @throws ArimaException if a probability is out of range
+     */
+    public double[][] quantiles(final double... probabilities) throws ArimaException {
+        for (val probability : probabilities) {
+            if (!(probability >= 0 && probability <= 1)) {
+                throw new ArimaException("probability must be between 0 and 1: " + probability);
+            }
+        }
+        val order = new Integer[probabilities.length];
+        for (var j = 0; j < order.length; ++j) {
+            order[j] = j;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(j -> probabilities[j]));
+        val result = new double[probabilities.length][horizon];
+        val column = new double[pathCount];
+        for (var step = 0; step < horizon; ++step) {
+            for (var path = 0; path < pathCount; ++path) {
+                column[path] = values[path * horizon + step];
+            }
+            var from = 0;
+            for (val j : order) {
+                val position = probabilities[j] * (pathCount - 1);
+                val below = (int) position;
+                val above = Math.min(below + 1, pathCount - 1);
+                val low = select(column, from, pathCount, below);
+                val high = select(column, below, pathCount, above);
+                result[j][step] = low + (position - below) * (high - low);
+                from = below;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Partially orders {@code values[from, to)} so that the k-th smallest value lands at index {@code k},
+     * with no larger value before it and no smaller one after it.
+     */
+    private static double select(final double[] values, int from, int to, final int k) {
+        while (to - from > 1) {
+            val middle = (from + to) >>> 1;
+            val pivot = medianOfThree(values[from], values[middle], values[to - 1]);
+            var i = from;
+            var j = to - 1;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    ++i;
+                }
+                while (values[j] > pivot) {
+                    --j;
+                }
+                if (i <= j) {
+                    val swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                to = j + 1;
+            } else if (k >= i) {
+                from = i;
+            } else {
+                break;
+            }
+        }
+        return values[k];
+    }
+
+    private static double medianOfThree(final double a, final double b, final double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    /**
+     * Central prediction interval at the given confidence level, between its two tail quantiles
+     *
+     * @param level the confidence level, e.g. 0.95
+     * @return the interval
+     * @throws ArimaException if the level is out of range
+     */
+    public PredictionInterval interval(final double level) throws ArimaException {
+        if (!(level > 0 && level < 1)) {
+            throw new ArimaException("confidence level must be between 0 and 1: " + level);
+        }
+        val bounds = quantiles((1 - level) / 2, (1 + level) / 2);
+        return new PredictionInterval(level, bounds[0], bounds[1]);
+    }
+}
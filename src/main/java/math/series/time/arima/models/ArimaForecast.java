@@ -1,13 +1,25 @@
 package math.series.time.arima.models;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.val;
 import math.series.time.ForecastResult;
 import math.series.time.arima.analytics.ArimaSolver;
+import math.series.time.arima.analytics.ForecastUtil;
+import math.series.time.arima.core.ArimaException;
+
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * ARIMA forecast result. Contains point forecasts and confidence intervals.
+ * <p>
+ * A forecast of a fitted model computes its intervals lazily, on first access, from the psi-weights cached
+ * on the model and its innovation variance {@code sigma2}: the bound at horizon {@code h} is
+ * {@code z·sqrt(sigma2)·sqrt(ψ₀² + … + ψ_{h-1}²)}. Other forecasts have no innovation variance and scale their
+ * intervals by the holdout RMSE instead; their bounds equal the point forecasts until {@link #setConfInterval}
+ * is called.
  */
 @Getter
 public class ArimaForecast extends ForecastResult {
@@ -21,20 +33,42 @@ public class ArimaForecast extends ForecastResult {
     private double aic;
     @Setter
     private double rmse;
+    /**
+     * Number of candidate orders the order search dropped as infeasible without fitting them
+     */
+    @Setter
+    private int prunedCandidates;
+    /**
+     * Number of candidate orders the order search started fitting
+     */
+    @Setter
+    private int evaluatedCandidates;
+    /**
+     * Whether the search time limit ran out, so the forecast comes from the best model found until then
+     */
+    @Setter
+    private boolean timeLimited;
 
     private double maxNormalizedVariance;
 
+    @Getter(AccessLevel.NONE)
+    private final FittedArimaModel model;
+    @Getter(AccessLevel.NONE)
+    private final Map<Double, PredictionInterval> intervals = new HashMap<>();
+
     /**
      * Constructor for ForecastResult
      */
     public ArimaForecast(final double[] forecast, final double pDataVariance) {
-        super(forecast);
-        this.upperBound = new double[forecast.length];
-        System.arraycopy(forecast, 0, upperBound, 0, forecast.length);
-
-        this.lowerBound = new double[forecast.length];
-        System.arraycopy(forecast, 0, lowerBound, 0, forecast.length);
+        this(forecast, pDataVariance, null);
+    }
 
+    /**
+     * Constructor for a forecast of a fitted model, whose psi-weights the intervals are derived from
+     */
+    ArimaForecast(final double[] forecast, final double pDataVariance, final FittedArimaModel model) {
+        super(forecast);
+        this.model = model;
         this.dataVariance = pDataVariance;
 
         this.aic = -1;
@@ -42,6 +76,115 @@ public class ArimaForecast extends ForecastResult {
         this.maxNormalizedVariance = -1;
     }
 
+    /**
+     * Upper bounds of the 95% prediction interval. For a forecast of a fitted model they are computed on first
+     * access; such forecasts used to return the point forecasts here until
+     * {@link #setSigma2AndPredicationInterval} was called.
+     *
+     * @return upper bounds, one per forecast point
+     */
+    public double[] getUpperBound() {
+        initializeBounds();
+        return upperBound;
+    }
+
+    /**
+     * Lower bounds of the 95% prediction interval. For a forecast of a fitted model they are computed on first
+     * access; such forecasts used to return the point forecasts here until
+     * {@link #setSigma2AndPredicationInterval} was called.
+     *
+     * @return lower bounds, one per forecast point
+     */
+    public double[] getLowerBound() {
+        initializeBounds();
+        return lowerBound;
+    }
+
+    /**
+     * Getter for the maximum normalized variance of the 95% prediction interval
+     *
+     * @return maximum normalized variance, or -1 if no interval has been computed
+     */
+    public double getMaxNormalizedVariance() {
+        initializeBounds();
+        return maxNormalizedVariance;
+    }
+
+    /**
+     * Prediction interval at the given confidence level, computed on first access and cached.
+     *
+     * @param level the confidence level, e.g. 0.8
+     * @return the interval
+     * @throws ArimaException if the level is out of range or the forecast does not come from a fitted model
+     */
+    public PredictionInterval getInterval(final double level) throws ArimaException {
+        return getIntervals(level)[0];
+    }
+
+    /**
+     * Prediction intervals at several confidence levels. Levels not computed yet are derived together,
+     * in one pass over the cumulative psi-weights of the model.
+     *
+     * @param levels the confidence levels, e.g. 0.5, 0.8, 0.95 and 0.99
+     * @return the intervals, in the order of the levels
+     * @throws ArimaException if a level is out of range or the forecast does not come from a fitted model
+     */
+    public PredictionInterval[] getIntervals(final double... levels) throws ArimaException {
+        if (model == null) {
+            throw new ArimaException("prediction intervals at arbitrary levels need a forecast of a fitted model");
+        }
+        val result = new PredictionInterval[levels.length];
+        val constants = new double[levels.length];  // zero for levels already cached
+        var missing = 0;
+        for (var l = 0; l < levels.length; ++l) {
+            result[l] = intervals.get(levels[l]);
+            if (result[l] == null) {
+                constants[l] = ForecastUtil.confidenceConstant(levels[l]);
+                result[l] = new PredictionInterval(levels[l], new double[forecast.length], new double[forecast.length]);
+                ++missing;
+            }
+        }
+        if (missing == 0) {
+            return result;
+        }
+        val cumulativePsi = model.cumulativePsi(forecast.length);
+        val scale = intervalScale();
+        for (var i = 0; i < forecast.length; ++i) {
+            for (var l = 0; l < levels.length; ++l) {
+                if (constants[l] != 0) {
+                    val bound = constants[l] * scale * cumulativePsi[i];
+                    result[l].lower()[i] = forecast[i] - bound;
+                    result[l].upper()[i] = forecast[i] + bound;
+                }
+            }
+        }
+        for (val interval : result) {
+            intervals.putIfAbsent(interval.level(), interval);
+        }
+        return result;
+    }
+
+    private void initializeBounds() {
+        if (upperBound != null && lowerBound != null) {
+            return;
+        }
+        if (model != null) {
+            maxNormalizedVariance = setConfInterval(ForecastUtil.confidence_constant_95pct,
+                    model.cumulativePsi(forecast.length));
+        } else {
+            upperBound = forecast.clone();
+            lowerBound = forecast.clone();
+        }
+    }
+
+    /**
+     * Standard deviation the interval widths are scaled by: {@code sqrt(sigma2)} of the fitted model,
+     * or the holdout RMSE for a forecast without one
+     */
+    private double intervalScale() {
+        return model != null ? Math.sqrt(model.getSigma2()) : rmse;
+    }
+
     /**
      * Compute normalized variance
      */
@@ -57,17 +200,24 @@ public class ArimaForecast extends ForecastResult {
 
 
     /**
-     * Updates the confidence intervals based on the given confidence level.
+     * Updates the confidence intervals based on the given confidence level, scaled as described on the class.
      *
      * @param constant          the constant for the confidence level (e.g., 1.96 for 95%)
      * @param cumulativeSumOfMA the cumulative sums of MA coefficients
      * @return the maximum normalized variance
      */
     public double setConfInterval(final double constant, final double[] cumulativeSumOfMA) {
+        if (upperBound == null || upperBound.length != forecast.length) {
+            upperBound = new double[forecast.length];
+        }
+        if (lowerBound == null || lowerBound.length != forecast.length) {
+            lowerBound = new double[forecast.length];
+        }
         double maxNormalizedVariance = -1.0;
         double bound;
+        val scale = intervalScale();
         for (int i = 0; i < forecast.length; i++) {
-            bound = constant * rmse * cumulativeSumOfMA[i];
+            bound = constant * scale * cumulativeSumOfMA[i];
             this.upperBound[i] = this.forecast[i] + bound;
             this.lowerBound[i] = this.forecast[i] - bound;
             val normalizedVariance = getNormalizedVariance(bound * bound);
@@ -80,11 +230,13 @@ public class ArimaForecast extends ForecastResult {
 
     /**
      * Compute and set Sigma2 and prediction confidence interval.
+     * A forecast of a fitted model reuses the psi-weights cached on the model.
      *
      * @param params ARIMA parameters from the model
      */
     public void setSigma2AndPredicationInterval(ArimaParameterModel params) {
-        maxNormalizedVariance = ArimaSolver
-                .setSigma2AndPredicationInterval(params, this, forecast.length);
+        maxNormalizedVariance = model != null
+                ? setConfInterval(ForecastUtil.confidence_constant_95pct, model.cumulativePsi(forecast.length))
+                : ArimaSolver.setSigma2AndPredicationInterval(params, this, forecast.length);
     }
 }
@@ -6,29 +6,53 @@ import lombok.val;
 import math.series.time.arima.analytics.ArimaSolver;
 
 /**
- * ARIMA model
+ * ARIMA model. Keeps the fitted parameters and a compact {@link ArimaState} rather than the training series,
+ * so its footprint and forecast latency depend on the model orders only.
  */
 @Getter
 public class ArimaModel {
     private final ArimaParameterModel params;
-    private final double[] data;
-    private final int trainDataSize;
+    private final ArimaState state;
     @Setter
     private double rmse;
     @Setter
     private double aic;
+    @Setter
+    private double aicc;
+    @Setter
+    private double bic;
+    /**
+     * Variance of the one-step in-sample residuals
+     */
+    @Setter
+    private double sigma2;
+    /**
+     * Number of Hannan-Rissanen iterations the estimation ran
+     */
+    @Setter
+    private int iterations;
 
     /**
-     * Constructor for ArimaModel
+     * Constructor for ArimaModel. The parameters must already hold their fitted coefficients: the residuals are
+     * computed here, once, so changing the coefficients of {@code params} afterwards leaves them stale.
      *
      * @param params        ARIMA parameter
      * @param data          original data
      * @param trainDataSize size of train data
      */
     public ArimaModel(ArimaParameterModel params, double[] data, int trainDataSize) {
+        this(params, ArimaSolver.computeState(params, data, trainDataSize));
+    }
+
+    /**
+     * Constructor for ArimaModel
+     *
+     * @param params ARIMA parameter
+     * @param state  forecasting state computed with these parameters
+     */
+    public ArimaModel(ArimaParameterModel params, ArimaState state) {
         this.params = params;
-        this.data = data;
-        this.trainDataSize = trainDataSize;
+        this.state = state;
     }
 
     /**
@@ -38,11 +62,27 @@ public class ArimaModel {
      * @return forecast result
      */
     public ArimaForecast forecast(final int forecastSize) {
-        val forecastResult = ArimaSolver.forecastARIMA(
-                params, data, trainDataSize, trainDataSize + forecastSize
-        );
-        forecastResult.setAic(this.aic);
-        forecastResult.setRmse(this.rmse);
-        return forecastResult;
+        return snapshot().forecast(forecastSize);
+    }
+
+    /**
+     * Appends new observations to the end of the training data without re-estimating the coefficients.
+     * Costs amortised O(p + q + D·m) per observation, independent of the history length.
+     *
+     * @param values new observations in time order
+     */
+    public void append(final double... values) {
+        for (val value : values) {
+            state.append(params, value);
+        }
+    }
+
+    /**
+     * Freezes the current state of this model into an immutable snapshot that can be shared between threads.
+     *
+     * @return fitted model snapshot
+     */
+    public FittedArimaModel snapshot() {
+        return new FittedArimaModel(this);
     }
 }
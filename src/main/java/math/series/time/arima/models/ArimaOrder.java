@@ -0,0 +1,29 @@
+package math.series.time.arima.models;
+
+/**
+ * Order specification of a seasonal ARIMA(p,d,q)(P,D,Q)m model.
+ * Holds no fitted state, so it can be freely shared between threads.
+ *
+ * @param p the order of the autoregressive part
+ * @param d the degree of differencing
+ * @param q the order of the moving-average part
+ * @param P the order of the seasonal autoregressive part
+ * @param D the degree of seasonal differencing
+ * @param Q the order of the seasonal moving-average part
+ * @param m the number of periods in each season
+ */
+public record ArimaOrder(int p, int d, int q, int P, int D, int Q, int m) {
+    /**
+     * Creates a fresh parameter model for this order with zero coefficients.
+     *
+     * @return new parameter model
+     */
+    public ArimaParameterModel newParameterModel() {
+        return new ArimaParameterModel(p, d, q, P, D, Q, m);
+    }
+
+    @Override
+    public String toString() {
+        return "ARIMA(" + p + "," + d + "," + q + ")(" + P + "," + D + "," + Q + ")" + m;
+    }
+}
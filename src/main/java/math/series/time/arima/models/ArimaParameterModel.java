@@ -2,7 +2,8 @@ package math.series.time.arima.models;
 
 
 import lombok.val;
-import math.series.time.arima.analytics.Integrator;
+import math.series.time.arima.analytics.DifferencingPolynomial;
+import math.series.time.arima.core.ArimaException;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealVector;
 
@@ -15,12 +16,9 @@ public final class ArimaParameterModel {
     // ARMA part
     private final BackShift opAR, opMA;
     private final int dp, dq, np, nq;
-    private final double[][] initSeasonal;
-    private final double[][] diffSeasonal;
-    private final double[][] integrateSeasonal;
-    private final double[][] initNonSeasonal;
-    private final double[][] diffNonSeasonal;
-    private final double[][] integrateNonSeasonal;
+    // differencing part: (1 - B)^d (1 - B^m)^D and the first d + D·m values of the differentiated series
+    private final DifferencingPolynomial differencing;
+    private final double[] initialConditions;
 
     /**
      * Constructor for ArimaParams
@@ -54,12 +52,8 @@ public final class ArimaParameterModel {
         this.dq = opMA.getDegree();
         this.np = opAR.numParams();
         this.nq = opMA.numParams();
-        this.initSeasonal = (D > 0 && m > 0) ? new double[D][m] : null;
-        this.initNonSeasonal = (d > 0) ? new double[d][1] : null;
-        this.diffSeasonal = (D > 0 && m > 0) ? new double[D][] : null;
-        this.diffNonSeasonal = (d > 0) ? new double[d][] : null;
-        this.integrateSeasonal = (D > 0 && m > 0) ? new double[D][] : null;
-        this.integrateNonSeasonal = (d > 0) ? new double[d][] : null;
+        this.differencing = DifferencingPolynomial.of(d, D, m);
+        this.initialConditions = new double[differencing.getDegree()];
     }
 
     /**
@@ -132,39 +126,21 @@ public final class ArimaParameterModel {
     }
 
     /**
-     * Getter for the last integrated seasonal data
+     * Getter for the number of initial conditions of the differencing, d + D·m
      *
-     * @return integrated seasonal data
+     * @return degree of the differencing operator
      */
-    public double[] getLastIntegrateSeasonal() {
-        return integrateSeasonal[D - 1];
+    public int getDifferencingDegree() {
+        return differencing.getDegree();
     }
 
     /**
-     * Getter for the last integrated NON-seasonal data
+     * Getter for the order specification
      *
-     * @return NON-integrated NON-seasonal data
+     * @return orders of this model
      */
-    public double[] getLastIntegrateNonSeasonal() {
-        return integrateNonSeasonal[d - 1];
-    }
-
-    /**
-     * Getter for the last differentiated seasonal data
-     *
-     * @return differentiate seasonal data
-     */
-    public double[] getLastDifferenceSeasonal() {
-        return diffSeasonal[D - 1];
-    }
-
-    /**
-     * Getter for the last differentiated NON-seasonal data
-     *
-     * @return differentiated NON-seasonal data
-     */
-    public double[] getLastDifferenceNonSeasonal() {
-        return diffNonSeasonal[d - 1];
+    public ArimaOrder getOrder() {
+        return new ArimaOrder(p, d, q, P, D, Q, m);
     }
 
     /**
@@ -252,47 +228,51 @@ public final class ArimaParameterModel {
     //================================
     // Differentiation and Integration
 
-    public void differentiateSeasonal(final double[] data) {
-        var current = data;
-        for (var j = 0; j < D; ++j) {
-            val next = new double[current.length - m];
-            diffSeasonal[j] = next;
-            val init = initSeasonal[j];
-            Integrator.differentiate(current, next, init, m);
-            current = next;
+    /**
+     * Copies the initial conditions recorded by another model's differentiation, so this model can integrate
+     * a series that was differentiated once and shared between models with the same differencing orders.
+     *
+     * @param source model that differentiated the series; must have the same d, D and m
+     */
+    public void copyInitialConditions(final ArimaParameterModel source) {
+        if (source.d != d || source.D != D || source.m != m) {
+            throw new ArimaException("incompatible differencing orders: " + source.summary() + " vs " + summary());
         }
+        System.arraycopy(source.initialConditions, 0, initialConditions, 0, initialConditions.length);
     }
 
-    public void differentiateNonSeasonal(final double[] data) {
-        var current = data;
-        for (int j = 0; j < d; ++j) {
-            val next = new double[current.length - 1];
-            diffNonSeasonal[j] = next;
-            val init = initNonSeasonal[j];
-            Integrator.differentiate(current, next, init, 1);
-            current = next;
-        }
+    /**
+     * Applies seasonal and non-seasonal differencing in a single pass and records the initial conditions.
+     *
+     * @param data the original series
+     * @return the differentiated series, {@link #getDifferencingDegree()} values shorter
+     */
+    public double[] differentiate(final double[] data) {
+        return differentiate(data, data.length);
     }
 
-    public void integrateSeasonal(final double[] data) {
-        var current = data;
-        for (var j = 0; j < D; ++j) {
-            val next = new double[current.length + m];
-            integrateSeasonal[j] = next;
-            val init = initSeasonal[j];
-            Integrator.integrate(current, next, init, m);
-            current = next;
-        }
+    /**
+     * Differentiates the first {@code length} values of a series, see {@link #differentiate(double[])}.
+     *
+     * @param data   the original series
+     * @param length number of values to use
+     * @return the differentiated series, {@link #getDifferencingDegree()} values shorter than {@code length}
+     */
+    public double[] differentiate(final double[] data, final int length) {
+        val differentiated = new double[Math.max(0, length - differencing.getDegree())];
+        differencing.differentiate(data, length, differentiated, initialConditions);
+        return differentiated;
     }
 
-    public void integrateNonSeasonal(final double[] data) {
-        var current = data;
-        for (var j = 0; j < d; ++j) {
-            val next = new double[current.length + 1];
-            integrateNonSeasonal[j] = next;
-            val init = initNonSeasonal[j];
-            Integrator.integrate(current, next, init, 1);
-            current = next;
-        }
+    /**
+     * Integrates a differentiated series in a single pass, starting from the recorded initial conditions.
+     *
+     * @param data the differentiated series
+     * @return the integrated series, {@link #getDifferencingDegree()} values longer
+     */
+    public double[] integrate(final double[] data) {
+        val integrated = new double[data.length + differencing.getDegree()];
+        differencing.integrate(data, integrated, initialConditions);
+        return integrated;
     }
 }
@@ -0,0 +1,171 @@
+package math.series.time.arima.models;
+
+import lombok.Getter;
+import lombok.val;
+import math.series.time.arima.analytics.ArimaWorkspace;
+import math.series.time.arima.analytics.DifferencingPolynomial;
+import math.series.time.arima.analytics.Integrator;
+import math.series.time.arima.core.ArimaException;
+
+import java.util.Arrays;
+
+/**
+ * Compact forecasting state of a fitted model. Instead of the training series it keeps only what the ARMA recursion
+ * and the integration read: the last max(dp, dq) centered stationary values with their residuals,
+ * the stationary mean and the last d + D·m original values. Its size depends on the model orders only.
+ * <p>
+ * The windows live in sliding buffers twice their size plus some slack, so {@link #append} costs amortised O(1)
+ * per observation: the buffers are compacted only when they run full.
+ */
+public final class ArimaState {
+    private static final int SLACK = 8;
+
+    private final DifferencingPolynomial differencing;
+    private final int window;  // max(dp, dq)
+    private final double[] data;  // centered stationary values, window ends at end
+    private final double[] errors;  // residuals aligned with data
+    private int end;
+    private final double[] history;  // original values, last d + D·m of them end at historyEnd
+    private int historyEnd;
+    @Getter
+    private final double meanStationary;
+    /**
+     * Variance of the stationary training data
+     */
+    @Getter
+    private final double dataVariance;
+
+    private ArimaState(final DifferencingPolynomial differencing, final int window,
+                       final double[] dataTail, final double[] errorsTail, final double[] seeds,
+                       final double meanStationary, final double dataVariance) {
+        this.differencing = differencing;
+        this.window = window;
+        this.data = new double[2 * window + SLACK];
+        this.errors = new double[data.length];
+        System.arraycopy(dataTail, dataTail.length - window, data, 0, window);
+        System.arraycopy(errorsTail, errorsTail.length - window, errors, 0, window);
+        this.end = window;
+        this.history = new double[2 * seeds.length + SLACK];
+        System.arraycopy(seeds, 0, history, 0, seeds.length);
+        this.historyEnd = seeds.length;
+        this.meanStationary = meanStationary;
+        this.dataVariance = dataVariance;
+    }
+
+    /**
+     * Runs the ARMA recursion over the training data once and keeps its tail.
+     *
+     * @param params         fitted ARIMA parameters
+     * @param dataStationary differentiated and centered training data
+     * @param meanStationary mean removed from the differentiated data
+     * @param seeds          last d + D·m values of the training data
+     * @return forecasting state
+     */
+    public static ArimaState of(final ArimaParameterModel params, final double[] dataStationary,
+                                final double meanStationary, final double[] seeds) {
+        if (seeds.length != params.getDifferencingDegree()) {
+            throw new ArimaException("Invalid seeds size: " + seeds.length
+                    + ", degree=" + params.getDifferencingDegree());
+        }
+        val n = dataStationary.length;
+        val window = Math.max(params.getDegreeP(), params.getDegreeQ());
+        try (var workspace = ArimaWorkspace.acquire()) {
+            val errors = workspace.buffer(ArimaWorkspace.Slot.STATE_ERRORS, n);
+            Arrays.fill(errors, 0, Math.min(window, n), 0.0);
+            for (var j = window; j < n; ++j) {
+                errors[j] = dataStationary[j] - params.forecastOnePointARMA(dataStationary, errors, j);
+            }
+            return new ArimaState(DifferencingPolynomial.of(params.d, params.D, params.m), window,
+                    tail(dataStationary, window), tail(errors, n, window), seeds,
+                    meanStationary, Integrator.computeVariance(dataStationary));
+        }
+    }
+
+    /**
+     * Creates an independent copy of this state.
+     *
+     * @return copy of the state
+     */
+    public ArimaState copy() {
+        return new ArimaState(differencing, window,
+                tail(data, end, window), tail(errors, end, window), seeds(),
+                meanStationary, dataVariance);
+    }
+
+    /**
+     * Incorporates a new observation without re-estimating the coefficients: differentiates it against the kept
+     * original values, centers it with the training mean and records its one-step innovation.
+     *
+     * @param params the parameters the state was computed with
+     * @param value  the new observation
+     */
+    public void append(final ArimaParameterModel params, final double value) {
+        if (end == data.length) {
+            System.arraycopy(data, end - window, data, 0, window);
+            System.arraycopy(errors, end - window, errors, 0, window);
+            end = window;
+        }
+        val degree = differencing.getDegree();
+        if (historyEnd == history.length) {
+            System.arraycopy(history, historyEnd - degree, history, 0, degree);
+            historyEnd = degree;
+        }
+        val stationary = differencing.differentiateNext(value, history, historyEnd) - meanStationary;
+        data[end] = stationary;
+        errors[end] = 0;
+        errors[end] = stationary - params.forecastOnePointARMA(data, errors, end);
+        ++end;
+        history[historyEnd++] = value;
+    }
+
+    /**
+     * Getter for the number of centered stationary values (and residuals) kept, max(dp, dq)
+     *
+     * @return window size
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Copies the kept stationary values and residuals into the beginning of recursion buffers.
+     *
+     * @param data   buffer of at least {@link #getWindow()} values
+     * @param errors buffer of at least {@link #getWindow()} values
+     */
+    void copyWindowTo(final double[] data, final double[] errors) {
+        System.arraycopy(this.data, end - window, data, 0, window);
+        System.arraycopy(this.errors, end - window, errors, 0, window);
+    }
+
+    /**
+     * Last d + D·m original values, to integrate forecasts from
+     */
+    double[] seeds() {
+        return tail(history, historyEnd, differencing.getDegree());
+    }
+
+    /**
+     * Copies the last d + D·m original values into the beginning of an integration buffer.
+     *
+     * @param dst buffer of at least d + D·m values
+     */
+    void copySeedsTo(final double[] dst) {
+        val degree = differencing.getDegree();
+        System.arraycopy(history, historyEnd - degree, dst, 0, degree);
+    }
+
+    /**
+     * Last {@code window} values of a series; zero-padded on the left if the series is shorter.
+     */
+    private static double[] tail(final double[] series, final int window) {
+        return tail(series, series.length, window);
+    }
+
+    private static double[] tail(final double[] series, final int end, final int window) {
+        val result = new double[window];
+        val length = Math.min(window, end);
+        System.arraycopy(series, end - length, result, window - length, length);
+        return result;
+    }
+}
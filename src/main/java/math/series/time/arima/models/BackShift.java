@@ -4,16 +4,24 @@ import lombok.Getter;
 import lombok.val;
 import math.series.time.arima.core.ArimaException;
 
+import java.util.Arrays;
+
 /**
  * Backshift operator for handling lags in ARIMA.
  * Implements polynomial operations on time series.
+ * <p>
+ * Only the enabled lags are stored (as a sorted set), so seasonal operators of degree Q·m cost
+ * memory and time proportional to their number of non-zero lags rather than to their degree.
  */
 public final class BackShift {
     @Getter
     private final int degree;  // maximum lag, e.g. AR(1) degree will be 1
-    private final boolean[] indices;
+    private int[] lags;  // sorted enabled lags
     private int[] offsets = null;
     private double[] coeffs = null;
+    // open-addressing lag -> coefficient index table, built by initializeParams
+    private int[] slotLags = null;
+    private int[] slotIndices = null;
 
     //Constructor
     public BackShift(int degree, boolean initial) {
@@ -21,24 +29,57 @@ public final class BackShift {
             throw new ArimaException("degree must be non-negative");
         }
         this.degree = degree;
-        this.indices = new boolean[this.degree + 1];
-        for (var j = 0; j <= this.degree; ++j) {
-            this.indices[j] = initial;
+        if (initial) {
+            this.lags = new int[degree + 1];
+            for (var j = 0; j <= degree; ++j) {
+                this.lags[j] = j;
+            }
+        } else {
+            this.lags = new int[]{0}; // zero index must be true all the time
         }
-        this.indices[0] = true; // zero index must be true all the time
     }
 
+    /**
+     * Creates an operator from a dense lag mask.
+     *
+     * @param indices     the lag mask
+     * @param copyIndices has no effect: the mask is always copied into the sparse representation
+     * @deprecated use {@link #BackShift(boolean[])}
+     */
+    @Deprecated
     public BackShift(boolean[] indices, boolean copyIndices) throws ArimaException {
+        this(indices);
+    }
+
+    /**
+     * Creates an operator from a dense lag mask. The mask is copied into the sparse representation,
+     * later changes to it do not affect the operator.
+     *
+     * @param indices the lag mask, {@code indices[j]} enables lag {@code j}
+     */
+    public BackShift(boolean[] indices) throws ArimaException {
         if (indices == null) {
             throw new ArimaException("null indices given");
         }
         this.degree = indices.length - 1;
-        if (copyIndices) {
-            this.indices = new boolean[degree + 1];
-            System.arraycopy(indices, 0, this.indices, 0, degree + 1);
-        } else {
-            this.indices = indices;
+        var count = 0;
+        for (val enabled : indices) {
+            if (enabled) {
+                ++count;
+            }
         }
+        this.lags = new int[count];
+        var index = 0;
+        for (var j = 0; j <= degree; ++j) {
+            if (indices[j]) {
+                this.lags[index++] = j;
+            }
+        }
+    }
+
+    private BackShift(int degree, int[] sortedLags) {
+        this.degree = degree;
+        this.lags = sortedLags;
     }
 
     public double[] getCoefficientsFlattened() {
@@ -60,48 +101,69 @@ public final class BackShift {
     }
 
     public void setIndex(int index, boolean enable) {
-        indices[index] = enable;
+        if (index < 0 || index > degree) {
+            throw new ArimaException("invalid lag index: " + index + ", degree=" + degree);
+        }
+        val position = Arrays.binarySearch(lags, index);
+        if (enable && position < 0) {
+            val insertion = -position - 1;
+            val updated = new int[lags.length + 1];
+            System.arraycopy(lags, 0, updated, 0, insertion);
+            updated[insertion] = index;
+            System.arraycopy(lags, insertion, updated, insertion + 1, lags.length - insertion);
+            lags = updated;
+        } else if (!enable && position >= 0) {
+            val updated = new int[lags.length - 1];
+            System.arraycopy(lags, 0, updated, 0, position);
+            System.arraycopy(lags, position + 1, updated, position, lags.length - position - 1);
+            lags = updated;
+        }
     }
 
     /**
      * Applies another backshift operator, combining lags.
+     * Costs O(k₁·k₂·log(k₁·k₂)) in the numbers of enabled lags, independent of the degrees.
      *
      * @param another the other backshift operator
      * @return the new combined operator
      */
     public BackShift apply(BackShift another) {
-        var mergedDegree = degree + another.degree;
-        var merged = new boolean[mergedDegree + 1];
-        for (var j = 0; j <= mergedDegree; ++j) {
-            merged[j] = false;
+        val products = new int[lags.length * another.lags.length];
+        var count = 0;
+        for (val lag : lags) {
+            for (val anotherLag : another.lags) {
+                products[count++] = lag + anotherLag;
+            }
         }
-        for (var j = 0; j <= degree; ++j) {
-            if (indices[j]) {
-                for (var k = 0; k <= another.degree; ++k) {
-                    merged[j + k] = merged[j + k] || another.indices[k];
-                }
+        Arrays.sort(products);
+        var unique = 0;
+        for (var j = 0; j < count; ++j) {
+            if (unique == 0 || products[unique - 1] != products[j]) {
+                products[unique++] = products[j];
             }
         }
-        return new BackShift(merged, false);
+        return new BackShift(degree + another.degree, Arrays.copyOf(products, unique));
     }
 
     public void initializeParams(boolean includeZero) {
-        indices[0] = includeZero;
-        var nonzeroCount = 0;
-        for (var j = 0; j <= degree; ++j) {
-            if (indices[j]) {
-                ++nonzeroCount;
-            }
+        setIndex(0, includeZero);
+        offsets = lags.clone(); // cannot be empty unless the operator has no lags at all
+        coeffs = new double[offsets.length];
+
+        var capacity = 2;
+        while (capacity < 2 * offsets.length) {
+            capacity <<= 1;
         }
-        offsets = new int[nonzeroCount]; // cannot be 0 as 0-th index is always true
-        coeffs = new double[nonzeroCount];
-        var coeffIndex = 0;
-        for (var j = 0; j <= degree; ++j) {
-            if (indices[j]) {
-                offsets[coeffIndex] = j;
-                coeffs[coeffIndex] = 0;
-                ++coeffIndex;
+        slotLags = new int[capacity];
+        slotIndices = new int[capacity];
+        Arrays.fill(slotLags, -1);
+        for (var j = 0; j < offsets.length; ++j) {
+            var slot = slotOf(offsets[j]);
+            while (slotLags[slot] >= 0) {
+                slot = (slot + 1) & (capacity - 1);
             }
+            slotLags[slot] = offsets[j];
+            slotIndices[slot] = j;
         }
     }
 
@@ -115,12 +177,7 @@ public final class BackShift {
     }
 
     public double getParam(final int paramIndex) throws ArimaException {
-        for (var j = 0; j < offsets.length; ++j) {
-            if (offsets[j] == paramIndex) {
-                return coeffs[j];
-            }
-        }
-        throw new ArimaException("invalid parameter index: " + paramIndex);
+        return coeffs[indexOf(paramIndex)];
     }
 
     public double[] getAllParam() {
@@ -128,17 +185,7 @@ public final class BackShift {
     }
 
     public void setParam(final int paramIndex, final double paramValue) throws ArimaException {
-        var offsetIndex = -1;
-        for (var j = 0; j < offsets.length; ++j) {
-            if (offsets[j] == paramIndex) {
-                offsetIndex = j;
-                break;
-            }
-        }
-        if (offsetIndex == -1) {
-            throw new ArimaException("invalid parameter index: " + paramIndex);
-        }
-        coeffs[offsetIndex] = paramValue;
+        coeffs[indexOf(paramIndex)] = paramValue;
     }
 
     public double getLinearCombinationFrom(double[] timeseries, int tsOffset) {
@@ -148,4 +195,24 @@ public final class BackShift {
         }
         return linearSum;
     }
+
+    /**
+     * O(1) lookup of the coefficient index of a lag.
+     */
+    private int indexOf(final int paramIndex) throws ArimaException {
+        if (paramIndex >= 0) {
+            var slot = slotOf(paramIndex);
+            while (slotLags[slot] >= 0) {
+                if (slotLags[slot] == paramIndex) {
+                    return slotIndices[slot];
+                }
+                slot = (slot + 1) & (slotLags.length - 1);
+            }
+        }
+        throw new ArimaException("invalid parameter index: " + paramIndex);
+    }
+
+    private int slotOf(final int lag) {
+        return (lag * 0x9E3779B9 >>> 16) & (slotLags.length - 1);
+    }
 }
@@ -0,0 +1,286 @@
+package math.series.time.arima.models;
+
+import lombok.Getter;
+import lombok.val;
+import math.series.time.arima.analytics.ArimaWorkspace;
+import math.series.time.arima.analytics.DifferencingPolynomial;
+import math.series.time.arima.analytics.ForecastUtil;
+import math.series.time.arima.core.ArimaException;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Immutable snapshot of a fitted ARIMA model: frozen coefficients and a private copy of the compact
+ * {@link ArimaState}. Forecasting takes O(horizon) time and keeps all intermediate state on the calling thread,
+ * so one instance can be shared by any number of threads without locking.
+ */
+public final class FittedArimaModel {
+    @Getter
+    private final ArimaOrder order;
+    private final int[] lagsAR;
+    private final double[] coeffsAR;
+    private final int[] lagsMA;
+    private final double[] coeffsMA;
+    // coefficients indexed by lag
+    private final double[] flatAR;
+    private final double[] flatMA;
+    // ARMA form on the original series indexed from lag one, differencing folded into the AR part, for psi-weights
+    private final double[] psiAR;
+    private final double[] psiMA;
+    // grown on demand; the psi recursion of a shorter horizon is a prefix of a longer one
+    private volatile double[] cumulativePsi = new double[0];
+    private final DifferencingPolynomial differencing;
+    private final ArimaState state;
+    @Getter
+    private final double rmse;
+    @Getter
+    private final double aic;
+    @Getter
+    private final double aicc;
+    @Getter
+    private final double bic;
+    @Getter
+    private final double sigma2;
+    private final double sigma;
+
+    /**
+     * Freezes the current coefficients and state of a fitted model.
+     *
+     * @param model the fitted model
+     */
+    public FittedArimaModel(final ArimaModel model) {
+        val params = model.getParams();
+        this.order = params.getOrder();
+        this.differencing = DifferencingPolynomial.of(params.d, params.D, params.m);
+        val vector = params.getParamsVector().toArray();
+        this.lagsAR = params.getOffsetsAR().clone();
+        this.coeffsAR = Arrays.copyOfRange(vector, 0, params.getNumParamsP());
+        this.lagsMA = params.getOffsetsMA().clone();
+        this.coeffsMA = Arrays.copyOfRange(vector, params.getNumParamsP(), vector.length);
+        this.flatAR = flatten(lagsAR, coeffsAR);
+        this.flatMA = flatten(lagsMA, coeffsMA);
+        this.psiAR = differencing.autoregression(flatAR);
+        this.psiMA = flatMA.length == 0 ? flatMA : Arrays.copyOfRange(flatMA, 1, flatMA.length);
+        this.state = model.getState().copy();
+        this.rmse = model.getRmse();
+        this.aic = model.getAic();
+        this.aicc = model.getAicc();
+        this.bic = model.getBic();
+        this.sigma2 = model.getSigma2();
+        this.sigma = Math.sqrt(sigma2);
+    }
+
+    /**
+     * Forecasts the given number of points past the end of the training data.
+     *
+     * @param forecastSize size of forecast
+     * @return forecast result
+     */
+    public ArimaForecast forecast(final int forecastSize) {
+        val forecast = new double[forecastSize];
+        forecastInto(forecastSize, forecast, null, null, 0);
+        val result = new ArimaForecast(forecast, state.getDataVariance(), this);
+        result.setAic(aic);
+        result.setRmse(rmse);
+        return result;
+    }
+
+    /**
+     * Forecasts the given number of points past the end of the training data straight into caller-supplied
+     * buffers, e.g. a column of a pre-allocated response. Nothing is allocated once the
+     * {@link ArimaWorkspace} and the psi-weights of this model have warmed up. The 95% prediction interval,
+     * {@code ±1.96·sqrt(sigma2)·sqrt(Σ psi²)}, is computed only if buffers for it are given.
+     *
+     * @param forecastSize size of forecast
+     * @param point        receives the point forecasts at {@code offset .. offset + forecastSize - 1}
+     * @param lower        receives the lower bounds at the same positions, or {@code null} to skip them
+     * @param upper        receives the upper bounds at the same positions, or {@code null} to skip them
+     * @param offset       index of the first forecast in the buffers
+     * @throws ArimaException if the forecast size is not positive or a buffer is too small
+     */
+    public void forecastInto(final int forecastSize, final double[] point, final double[] lower,
+                             final double[] upper, final int offset) throws ArimaException {
+        if (forecastSize <= 0) {
+            throw new ArimaException("forecast size must be positive: " + forecastSize);
+        }
+        checkBuffer(point, offset, forecastSize, "point");
+        if (lower != null) {
+            checkBuffer(lower, offset, forecastSize, "lower");
+        }
+        if (upper != null) {
+            checkBuffer(upper, offset, forecastSize, "upper");
+        }
+        try (var workspace = ArimaWorkspace.acquire()) {
+            val window = state.getWindow();
+            val data = workspace.buffer(ArimaWorkspace.Slot.FORECAST_DATA, window + forecastSize);
+            val errors = workspace.buffer(ArimaWorkspace.Slot.FORECAST_ERRORS, window + forecastSize);
+            state.copyWindowTo(data, errors);
+            Arrays.fill(errors, window, window + forecastSize, 0.0);
+            val degree = differencing.getDegree();
+            val integrated = workspace.buffer(ArimaWorkspace.Slot.INTEGRATED, degree + forecastSize);
+            state.copySeedsTo(integrated);
+            for (var k = 0; k < forecastSize; ++k) {
+                val j = window + k;
+                data[j] = forecastOnePoint(data, errors, j);
+                val value = differencing.integrateNext(data[j] + state.getMeanStationary(), integrated, degree + k);
+                integrated[degree + k] = value;
+                point[offset + k] = value;
+            }
+        }
+        if (lower == null && upper == null) {
+            return;
+        }
+        val cumulative = cumulativePsi(forecastSize);
+        for (var k = 0; k < forecastSize; ++k) {
+            val bound = ForecastUtil.confidence_constant_95pct * sigma * cumulative[k];
+            if (lower != null) {
+                lower[offset + k] = point[offset + k] - bound;
+            }
+            if (upper != null) {
+                upper[offset + k] = point[offset + k] + bound;
+            }
+        }
+    }
+
+    /**
+     * Recomputes the one-step in-sample residuals of this model on its training data. A fitted model keeps only
+     * the last few residuals, so bootstrap simulation takes the rest from here.
+     *
+     * @param data the training data the model was fitted on
+     * @return residuals of the ARMA recursion past its first max(dp, dq) values
+     * @throws ArimaException if the data are too short to leave any residual
+     */
+    public double[] residuals(final double[] data) throws ArimaException {
+        val degree = differencing.getDegree();
+        val window = state.getWindow();
+        if (data.length - degree <= window) {
+            throw new ArimaException("not enough data for residuals: " + data.length
+                    + ", needed more than " + (degree + window));
+        }
+        val stationary = new double[data.length - degree];
+        differencing.differentiate(data, stationary, new double[degree]);
+        val errors = new double[stationary.length];
+        for (var j = 0; j < stationary.length; ++j) {
+            stationary[j] -= state.getMeanStationary();
+            errors[j] = j < window ? 0.0 : stationary[j] - forecastOnePoint(stationary, errors, j);
+        }
+        return Arrays.copyOfRange(errors, window, errors.length);
+    }
+
+    /**
+     * Simulates one future sample path: the ARMA recursion is driven by residuals drawn with replacement
+     * instead of zero innovations, and the path is integrated like a point forecast.
+     *
+     * @param forecastSize size of forecast
+     * @param residuals    residuals to draw from, see {@link #residuals(double[])}
+     * @param random       source of the draws
+     * @param path         receives the simulated values at {@code offset .. offset + forecastSize - 1}
+     * @param offset       index of the first value in the buffer
+     * @throws ArimaException if the forecast size is not positive, there are no residuals or the buffer is too small
+     */
+    public void simulateInto(final int forecastSize, final double[] residuals, final SplittableRandom random,
+                             final double[] path, final int offset) throws ArimaException {
+        if (forecastSize <= 0) {
+            throw new ArimaException("forecast size must be positive: " + forecastSize);
+        }
+        if (residuals.length == 0) {
+            throw new ArimaException("no residuals to draw from");
+        }
+        checkBuffer(path, offset, forecastSize, "path");
+        try (var workspace = ArimaWorkspace.acquire()) {
+            val window = state.getWindow();
+            val data = workspace.buffer(ArimaWorkspace.Slot.FORECAST_DATA, window + forecastSize);
+            val errors = workspace.buffer(ArimaWorkspace.Slot.FORECAST_ERRORS, window + forecastSize);
+            state.copyWindowTo(data, errors);
+            val degree = differencing.getDegree();
+            val integrated = workspace.buffer(ArimaWorkspace.Slot.INTEGRATED, degree + forecastSize);
+            state.copySeedsTo(integrated);
+            for (var k = 0; k < forecastSize; ++k) {
+                val j = window + k;
+                val innovation = residuals[random.nextInt(residuals.length)];
+                data[j] = forecastOnePoint(data, errors, j) + innovation;
+                errors[j] = innovation;
+                val value = differencing.integrateNext(data[j] + state.getMeanStationary(), integrated, degree + k);
+                integrated[degree + k] = value;
+                path[offset + k] = value;
+            }
+        }
+    }
+
+    /**
+     * Getter for the mean removed from the differentiated training data
+     *
+     * @return stationary mean
+     */
+    public double getMeanStationary() {
+        return state.getMeanStationary();
+    }
+
+    /**
+     * Getter for the AR coefficients indexed by lag
+     *
+     * @return copy of the flattened AR coefficients
+     */
+    public double[] getCoefficientsAR() {
+        return flatAR.clone();
+    }
+
+    /**
+     * Getter for the MA coefficients indexed by lag
+     *
+     * @return copy of the flattened MA coefficients
+     */
+    public double[] getCoefficientsMA() {
+        return flatMA.clone();
+    }
+
+    /**
+     * Square roots of the cumulative sums of squared psi-weights of the model on the original series, the
+     * prediction interval widths per unit of innovation standard deviation {@code sqrt(sigma2)}.
+     * Computed once per model and extended when a longer horizon is asked for.
+     *
+     * @param horizon the number of steps needed
+     * @return cached vector of at least {@code horizon} values; must not be modified
+     */
+    double[] cumulativePsi(final int horizon) {
+        var cached = cumulativePsi;
+        if (cached.length < horizon) {
+            cached = ForecastUtil.getCumulativeSumOfCoeff(
+                    ForecastUtil.ARMAtoMA(psiAR, psiMA, Math.max(horizon, 2 * cached.length)));
+            cumulativePsi = cached;
+        }
+        return cached;
+    }
+
+    private double forecastOnePoint(final double[] data, final double[] errors, final int index) {
+        var estimate = 0.0;
+        for (var j = 0; j < lagsAR.length; ++j) {
+            estimate += data[index - lagsAR[j]] * coeffsAR[j];
+        }
+        for (var j = 0; j < lagsMA.length; ++j) {
+            estimate += errors[index - lagsMA[j]] * coeffsMA[j];
+        }
+        return estimate;
+    }
+
+    private static void checkBuffer(final double[] buffer, final int offset, final int forecastSize,
+                                    final String name) throws ArimaException {
+        if (buffer == null || offset < 0 || offset > buffer.length - forecastSize) {
+            throw new ArimaException("Invalid " + name + " buffer: size="
+                    + (buffer == null ? "null" : String.valueOf(buffer.length))
+                    + ", offset=" + offset + ", forecastSize=" + forecastSize);
+        }
+    }
+
+    private static double[] flatten(final int[] lags, final double[] coeffs) {
+        if (lags.length == 0) {
+            return new double[0];
+        }
+        val flattened = new double[lags[lags.length - 1] + 1];
+        for (var j = 0; j < lags.length; ++j) {
+            flattened[lags[j]] = coeffs[j];
+        }
+        return flattened;
+    }
+}
@@ -0,0 +1,12 @@
+package math.series.time.arima.models;
+
+/**
+ * Prediction interval of a forecast at one confidence level.
+ * The bounds are shared with the forecast that computed them and must not be modified.
+ *
+ * @param level the confidence level, e.g. 0.95
+ * @param lower lower bounds, one per forecast point
+ * @param upper upper bounds, one per forecast point
+ */
+public record PredictionInterval(double level, double[] lower, double[] upper) {
+}
@@ -0,0 +1,90 @@
+package math.arima;
+
+import lombok.val;
+import math.series.time.arima.analytics.Arima;
+import math.series.time.arima.analytics.ArimaBatch;
+import math.series.time.arima.analytics.SearchOptions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ArimaBatchTest {
+    @Test
+    void testBatchMatchesSequentialForecastsAndRecordsFailures() {
+        val random = new Random(17);
+        val series = new LinkedHashMap<String, double[]>();
+        for (var s = 0; s < 12; ++s) {
+            val data = new double[20 + 10 * s];
+            for (var j = 0; j < data.length; ++j) {
+                data[j] = s + 0.5 * j + random.nextGaussian();
+            }
+            series.put("sku-" + s, data);
+        }
+        series.put("empty", new double[0]);
+
+        val progress = new AtomicInteger();
+        val pool = new ForkJoinPool(4);
+        try {
+            val result = ArimaBatch.builder()
+                    .pool(pool)
+                    .listener((id, completed, total) -> progress.incrementAndGet())
+                    .build()
+                    .forecast(series, 3);
+
+            assertThat(result.getSeriesCount()).isEqualTo(13);
+            assertThat(progress.get()).isEqualTo(13);
+            assertThat(result.getFailures()).containsOnlyKeys("empty");
+            assertThat(result.getForecasts().keySet()).containsExactlyElementsOf(series.keySet().stream()
+                    .filter(id -> !id.equals("empty")).toList());
+            assertThat(result.getThroughput()).isPositive();
+            for (val entry : result.getForecasts().entrySet()) {
+                assertThat(entry.getValue().getForecast())
+                        .containsExactly(Arima.forecast(series.get(entry.getKey()), 3).getForecast());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testFewSeriesFitCandidatesOnThePool() {
+        val data = new double[60];
+        for (var j = 0; j < data.length; ++j) {
+            data[j] = 5 + Math.sin(j / 3.0) + 0.1 * j;
+        }
+        val series = new LinkedHashMap<String, double[]>();
+        series.put("only", data);
+
+        val result = ArimaBatch.defaults().forecast(series, 4);
+
+        assertThat(result.getFailures()).isEmpty();
+        assertThat(result.getForecasts().get("only").getForecast())
+                .containsExactly(Arima.forecast(data, 4).getForecast());
+    }
+
+    @Test
+    void testForkedCandidatesRespectTheDeadline() {
+        val data = new double[60];
+        for (var j = 0; j < data.length; ++j) {
+            data[j] = 5 + Math.sin(j / 3.0) + 0.1 * j;
+        }
+        val series = new LinkedHashMap<String, double[]>();
+        series.put("only", data);
+
+        val result = ArimaBatch.builder()
+                .options(SearchOptions.builder().timeLimit(Duration.ZERO).build())
+                .build()
+                .forecast(series, 4);
+
+        val forecast = result.getForecasts().get("only");
+        assertThat(forecast.isTimeLimited()).isTrue();
+        assertThat(forecast.getEvaluatedCandidates()).isZero();
+        assertThat(forecast.getForecast()).hasSize(4);
+    }
+}
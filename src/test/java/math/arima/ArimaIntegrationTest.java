@@ -2,11 +2,13 @@ package math.arima;
 
 import lombok.val;
 import math.series.time.arima.analytics.Arima;
+import math.series.time.arima.analytics.DifferencingPolynomial;
 import math.series.time.arima.analytics.Integrator;
 import math.series.time.arima.models.ArimaForecast;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 public class ArimaIntegrationTest {
     @Test
@@ -51,4 +53,39 @@ public class ArimaIntegrationTest {
         Integrator.integrate(data, result, initial, 1);
         assertThat(result).containsExactly(5.0, 10.0, 15.0, 20.0);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDifferencingFoldsIntoAutoregression() {
+        // (1 - 0.5B)(1 - B) = 1 - 1.5B + 0.5B²
+        assertThat(DifferencingPolynomial.of(1, 0, 0).autoregression(new double[]{0, 0.5}))
+                .containsExactly(1.5, -0.5);
+        // (1 - B)(1 - B⁴) = 1 - B - B⁴ + B⁵
+        assertThat(DifferencingPolynomial.of(1, 1, 4).autoregression(new double[0]))
+                .containsExactly(new double[]{1.0, 0.0, 0.0, 1.0, -1.0}, within(0.0));
+        assertThat(DifferencingPolynomial.of(0, 0, 0).autoregression(new double[]{0, 0.3, -0.2}))
+                .containsExactly(0.3, -0.2);
+    }
+
+    @Test
+    void testFusedDifferencingMatchesChainedDifferencing() {
+        val data = TestUtils.trendSeasonalSeries(60, 3);
+        // (1 - B)(1 - B^12)^2 step by step
+        var chained = data;
+        for (val lag : new int[]{12, 12, 1}) {
+            val next = new double[chained.length - lag];
+            Integrator.differentiate(chained, next, new double[lag], lag);
+            chained = next;
+        }
+
+        val polynomial = DifferencingPolynomial.of(1, 2, 12);
+        assertThat(polynomial.getDegree()).isEqualTo(25);
+        val fused = new double[data.length - 25];
+        val initial = new double[25];
+        polynomial.differentiate(data, fused, initial);
+        assertThat(fused).containsExactly(chained, within(1e-9));
+
+        val restored = new double[data.length];
+        polynomial.integrate(fused, restored, initial);
+        assertThat(restored).containsExactly(data, within(1e-9));
+    }
+}
@@ -2,10 +2,24 @@ package math.arima;
 
 
 import lombok.val;
+import math.series.time.arima.analytics.ArimaSolver;
+import math.series.time.arima.analytics.ForecastUtil;
+import math.series.time.arima.core.ArimaException;
 import math.series.time.arima.models.ArimaModel;
 import math.series.time.arima.models.ArimaParameterModel;
+import math.series.time.arima.models.ArimaState;
+import org.apache.commons.math3.distribution.NormalDistribution;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 public class ArimaModelTest {
@@ -16,4 +30,162 @@ public class ArimaModelTest {
         ArimaModel model = new ArimaModel(params, data, 2);
         assertNotNull(model.forecast(1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSnapshotForecastsLikeModelFromManyThreads() throws Exception {
+        val data = TestUtils.trendSeasonalSeries(80, 5);
+        val model = ArimaSolver.estimateARIMA(new ArimaParameterModel(1, 1, 1, 1, 1, 0, 4), data, 72, 80);
+        val expected = model.forecast(8).getForecast();
+        val snapshot = model.snapshot();
+
+        assertThat(snapshot.getAic()).isEqualTo(model.getAic());
+        assertThat(snapshot.forecast(8).getForecast()).containsExactly(expected, within(1e-9));
+
+        val pool = Executors.newFixedThreadPool(4);
+        try {
+            val tasks = new ArrayList<Callable<double[]>>();
+            for (var j = 0; j < 32; ++j) {
+                tasks.add(() -> snapshot.forecast(8).getForecast());
+            }
+            for (val future : pool.invokeAll(tasks)) {
+                assertThat(future.get()).containsExactly(snapshot.forecast(8).getForecast());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testForecastIntoMatchesForecastWithIntervals() {
+        val data = TestUtils.trendSeasonalSeries(120, 21);
+        val params = new ArimaParameterModel(0, 1, 0, 0, 0, 0, 1);
+        val model = ArimaSolver.estimateARIMA(params, data, 108, 120);
+        val expected = model.forecast(12).getForecast();
+        val snapshot = model.snapshot();
+
+        val point = new double[20];
+        val lower = new double[20];
+        val upper = new double[20];
+        Arrays.fill(point, Double.NaN);
+        snapshot.forecastInto(12, point, lower, upper, 5);
+
+        assertThat(Arrays.copyOfRange(point, 5, 17)).containsExactly(expected, within(1e-9));
+        // ARIMA(0,1,0): the h-step half-width is z·sqrt(sigma2·h)
+        for (var h = 1; h <= 12; ++h) {
+            val halfWidth = ForecastUtil.confidence_constant_95pct * Math.sqrt(snapshot.getSigma2() * h);
+            assertThat(upper[4 + h]).isCloseTo(expected[h - 1] + halfWidth, within(1e-9));
+            assertThat(lower[4 + h]).isCloseTo(expected[h - 1] - halfWidth, within(1e-9));
+        }
+        assertThat(point[4]).isNaN();
+        assertThat(point[17]).isNaN();
+
+        val pointOnly = new double[12];
+        snapshot.forecastInto(12, pointOnly, null, null, 0);
+        assertThat(pointOnly).containsExactly(expected, within(1e-9));
+        assertThatThrownBy(() -> snapshot.forecastInto(12, pointOnly, null, null, 1))
+                .isInstanceOf(ArimaException.class);
+    }
+
+    @Test
+    public void testIntervalsAtSeveralLevelsShareCachedPsiWeights() {
+        val data = TestUtils.trendSeasonalSeries(100, 23);
+        val params = new ArimaParameterModel(1, 1, 0, 0, 0, 0, 1);
+        val snapshot = ArimaSolver.estimateARIMA(params, data, 90, 100).snapshot();
+        val forecast = snapshot.forecast(10);
+        val levels = new double[]{0.5, 0.8, 0.95, 0.99};
+        val intervals = forecast.getIntervals(levels);
+
+        // ARIMA(1,1,0): ψ_j = 1 + φ + … + φ^j, the psi-weights of the AR(1) summed by the differencing
+        val phi = snapshot.getCoefficientsAR()[1];
+        val sigma = Math.sqrt(snapshot.getSigma2());
+        val normal = new NormalDistribution();
+        var psi = 0.0;
+        var sumOfSquares = 0.0;
+        for (var i = 0; i < 10; ++i) {
+            psi = 1 + phi * psi;
+            sumOfSquares += psi * psi;
+            for (var l = 0; l < levels.length; ++l) {
+                val z = normal.inverseCumulativeProbability((1 + levels[l]) / 2);
+                val halfWidth = z * sigma * Math.sqrt(sumOfSquares);
+                assertThat(intervals[l].upper()[i]).isCloseTo(forecast.getForecast()[i] + halfWidth, within(1e-9));
+                assertThat(intervals[l].lower()[i]).isCloseTo(forecast.getForecast()[i] - halfWidth, within(1e-9));
+            }
+            val halfWidth = ForecastUtil.confidence_constant_95pct * sigma * Math.sqrt(sumOfSquares);
+            assertThat(forecast.getUpperBound()[i]).isCloseTo(forecast.getForecast()[i] + halfWidth, within(1e-9));
+            assertThat(forecast.getLowerBound()[i]).isCloseTo(forecast.getForecast()[i] - halfWidth, within(1e-9));
+        }
+        assertThat(forecast.getInterval(0.8)).isSameAs(intervals[1]);
+
+        // a longer horizon extends the cached psi-weights without changing the shorter prefix
+        val longer = snapshot.forecast(30).getInterval(0.95);
+        assertThat(Arrays.copyOf(longer.upper(), 10)).containsExactly(intervals[2].upper(), within(1e-9));
+        assertThatThrownBy(() -> forecast.getInterval(1.5)).isInstanceOf(ArimaException.class);
+    }
+
+    @Test
+    public void testIntervalsScaleWithSigma2AndIntegratedPsiWeights() {
+        val random = new Random(29);
+        val walk = new double[200];
+        for (var j = 1; j < walk.length; ++j) {
+            walk[j] = walk[j - 1] + random.nextGaussian();
+        }
+        // random walk: every psi-weight of (1 - B)⁻¹ is one, so the bound grows with the square root of the horizon
+        val randomWalk = ArimaSolver.estimateARIMA(new ArimaParameterModel(0, 1, 0, 0, 0, 0, 1), walk, 190, 200)
+                .snapshot();
+        val walkForecast = randomWalk.forecast(10);
+        val sigma = Math.sqrt(randomWalk.getSigma2());
+        for (var k = 0; k < 10; ++k) {
+            assertThat(walkForecast.getUpperBound()[k] - walkForecast.getForecast()[k])
+                    .isCloseTo(ForecastUtil.confidence_constant_95pct * sigma * Math.sqrt(k + 1), within(1e-9));
+        }
+
+        val ar = new double[400];
+        for (var j = 1; j < ar.length; ++j) {
+            ar[j] = 0.6 * ar[j - 1] + random.nextGaussian();
+        }
+        // AR(1): psi-weights are φ^k
+        val ar1 = ArimaSolver.estimateARIMA(new ArimaParameterModel(1, 0, 0, 0, 0, 0, 1), ar, 390, 400).snapshot();
+        val phi = ar1.getCoefficientsAR()[1];
+        val arForecast = ar1.forecast(6);
+        var sumOfSquares = 0.0;
+        for (var k = 0; k < 6; ++k) {
+            sumOfSquares += Math.pow(phi, 2 * k);
+            assertThat(arForecast.getForecast()[k] - arForecast.getLowerBound()[k])
+                    .isCloseTo(ForecastUtil.confidence_constant_95pct * Math.sqrt(ar1.getSigma2() * sumOfSquares),
+                            within(1e-9));
+        }
+    }
+
+    @Test
+    public void testCompactStateForecastsLikeFullHistory() {
+        val data = TestUtils.trendSeasonalSeries(400, 8);
+        val params = new ArimaParameterModel(2, 1, 1, 1, 1, 1, 12);
+        val model = ArimaSolver.estimateARIMA(params, data, 390, 400);
+
+        assertThat(model.getState().getWindow()).isEqualTo(Math.max(params.getDegreeP(), params.getDegreeQ()));
+        val fromHistory = ArimaSolver.forecastARIMA(params, data, 390, 400).getForecast();
+        assertThat(model.forecast(10).getForecast()).containsExactly(fromHistory, within(1e-6));
+    }
+
+    @Test
+    public void testAppendMatchesStateOfLongerHistory() {
+        val data = TestUtils.trendSeasonalSeries(200, 13);
+        val params = new ArimaParameterModel(2, 1, 1, 1, 1, 0, 6);
+        val model = ArimaSolver.estimateARIMA(params, data, 150, 160);
+        for (var j = 150; j < data.length; j += 5) {
+            model.append(Arrays.copyOfRange(data, j, j + 5));
+        }
+
+        // same coefficients and training mean, recursion run over the whole series
+        val mean = model.getState().getMeanStationary();
+        val stationary = new ArimaParameterModel(0, 1, 0, 0, 1, 0, 6).differentiate(data);
+        for (var j = 0; j < stationary.length; ++j) {
+            stationary[j] -= mean;
+        }
+        val seeds = Arrays.copyOfRange(data, data.length - params.getDifferencingDegree(), data.length);
+        val expected = new ArimaModel(params, ArimaState.of(params, stationary, mean, seeds));
+
+        assertThat(model.forecast(12).getForecast())
+                .containsExactly(expected.forecast(12).getForecast(), within(1e-9));
+    }
+}
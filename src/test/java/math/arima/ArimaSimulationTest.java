@@ -0,0 +1,104 @@
+package math.arima;
+
+import lombok.val;
+import math.series.time.arima.analytics.ArimaSimulation;
+import math.series.time.arima.analytics.ArimaSolver;
+import math.series.time.arima.core.ArimaException;
+import math.series.time.arima.models.ArimaParameterModel;
+import math.series.time.arima.models.FittedArimaModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class ArimaSimulationTest {
+    private static double[] skewedSeries(final int length) {
+        val random = new Random(31);
+        val data = new double[length];
+        for (var j = 0; j < data.length; ++j) {
+            data[j] = 30 + 0.2 * j + 5 * Math.sin(j * Math.PI / 6) - Math.log(random.nextDouble());
+        }
+        return data;
+    }
+
+    private static FittedArimaModel fit(final double[] data) {
+        return ArimaSolver.estimateARIMA(new ArimaParameterModel(1, 1, 1, 1, 1, 0, 12),
+                data, data.length, data.length + 1).snapshot();
+    }
+
+    @Test
+    void testPathsAreReproducibleRegardlessOfThreadCount() {
+        val data = skewedSeries(120);
+        val model = fit(data);
+        val single = new ForkJoinPool(1);
+        val many = new ForkJoinPool(4);
+        try {
+            val first = ArimaSimulation.builder().pool(single).paths(1000).seed(7).build().simulate(model, data, 24);
+            val second = ArimaSimulation.builder().pool(many).paths(1000).seed(7).build().simulate(model, data, 24);
+            val other = ArimaSimulation.builder().pool(many).paths(1000).seed(8).build().simulate(model, data, 24);
+
+            assertThat(second.quantiles(0.1, 0.5, 0.9)).isDeepEqualTo(first.quantiles(0.1, 0.5, 0.9));
+            for (var path = 0; path < 1000; path += 97) {
+                assertThat(second.getValue(path, 23)).isEqualTo(first.getValue(path, 23));
+            }
+            assertThat(other.getValue(0, 23)).isNotEqualTo(first.getValue(0, 23));
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+
+    @Test
+    void testQuantilesBracketPointForecast() {
+        val data = skewedSeries(120);
+        val model = fit(data);
+        val point = model.forecast(12).getForecast();
+        val paths = ArimaSimulation.builder().paths(4000).build().simulate(model, data, 12);
+        val interval = paths.interval(0.9);
+        val median = paths.quantile(0.5);
+
+        assertThat(paths.getPathCount()).isEqualTo(4000);
+        assertThat(paths.getHorizon()).isEqualTo(12);
+        for (var step = 0; step < 12; ++step) {
+            assertThat(interval.lower()[step]).isLessThan(median[step]);
+            assertThat(interval.upper()[step]).isGreaterThan(median[step]);
+        }
+        val probabilities = new double[]{0.975, 0.05, 0.5, 0.25};
+        val quantiles = paths.quantiles(probabilities);
+        for (val step : new int[]{0, 11}) {
+            val column = new double[4000];
+            for (var path = 0; path < 4000; ++path) {
+                column[path] = paths.getValue(path, step);
+            }
+            Arrays.sort(column);
+            for (var j = 0; j < probabilities.length; ++j) {
+                val position = probabilities[j] * 3999;
+                val below = (int) position;
+                val expected = column[below] + (position - below) * (column[below + 1] - column[below]);
+                assertThat(quantiles[j][step]).isCloseTo(expected, within(1e-9));
+            }
+        }
+        // residuals have mean close to zero, so the first step is centered near the point forecast
+        assertThat(paths.quantile(0.0)[0]).isLessThan(point[0]);
+        assertThat(paths.quantile(1.0)[0]).isGreaterThan(point[0]);
+        assertThat(median[0]).isCloseTo(point[0], within(interval.upper()[0] - interval.lower()[0]));
+    }
+
+    @Test
+    void testOverflowingPathCountIsRejected() {
+        val data = skewedSeries(120);
+        val model = fit(data);
+        // 2^20 · 2^12 wraps to zero as an int, 2^20 · 3000 to a negative size
+        for (val forecastSize : new int[]{1 << 12, 3000}) {
+            assertThatThrownBy(() -> ArimaSimulation.builder().paths(1 << 20).build()
+                    .simulate(model, data, forecastSize))
+                    .isInstanceOf(ArimaException.class)
+                    .hasCauseInstanceOf(ArithmeticException.class);
+        }
+    }
+}
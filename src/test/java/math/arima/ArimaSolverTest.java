@@ -3,9 +3,12 @@ package math.arima;
 
 import lombok.val;
 import math.series.time.arima.analytics.ArimaSolver;
+import math.series.time.arima.analytics.ForecastUtil;
+import math.series.time.arima.models.ArimaForecast;
 import math.series.time.arima.models.ArimaParameterModel;
 import org.junit.jupiter.api.Test;
 
+import static org.assertj.core.api.Assertions.within;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -33,4 +36,23 @@ public class ArimaSolverTest {
         val aic = ArimaSolver.computeAICValidation(data, 0.2, params);
         assertThat(aic).isNotNegative();
     }
-}
\ No newline at end of file
+
+    @Test
+    void testIntervalsWithoutModelUseLagIndexedCoefficients() {
+        val params = new ArimaParameterModel(1, 0, 1, 0, 0, 0, 1);
+        params.setParamsFromVector(new double[]{0.5, 0.3});
+        val forecast = new ArimaForecast(new double[]{10, 10, 10, 10}, -1);
+        forecast.setRmse(2.0);
+        forecast.setSigma2AndPredicationInterval(params);
+
+        // ARMA(1,1) psi-weights: 1, φ + θ, φ(φ + θ), φ²(φ + θ)
+        val psi = new double[]{1, 0.8, 0.4, 0.2};
+        var sumOfSquares = 0.0;
+        for (var h = 0; h < psi.length; ++h) {
+            sumOfSquares += psi[h] * psi[h];
+            val bound = ForecastUtil.confidence_constant_95pct * 2.0 * Math.sqrt(sumOfSquares);
+            assertThat(forecast.getUpperBound()[h]).isCloseTo(10 + bound, within(1e-12));
+            assertThat(forecast.getLowerBound()[h]).isCloseTo(10 - bound, within(1e-12));
+        }
+    }
+}
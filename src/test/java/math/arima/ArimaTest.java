@@ -1,14 +1,26 @@
 package math.arima;
 
 import lombok.val;
+import math.series.time.InterruptibleFuture;
 import math.series.time.arima.analytics.Arima;
+import math.series.time.arima.analytics.ArimaSolver;
+import math.series.time.arima.analytics.SearchOptions;
+import math.series.time.arima.analytics.SearchStrategy;
 import math.series.time.arima.core.ArimaException;
 import math.series.time.arima.models.ArimaForecast;
-import math.series.time.arima.models.ArimaModel;
+import math.series.time.arima.models.ArimaOrder;
 import math.series.time.arima.models.ArimaParameterModel;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -60,6 +72,216 @@ class ArimaTest {
                 "RMSE должен быть неотрицательным. Текущее значение: " + forecast.getRmse());
     }
 
+    @Test
+    void testFitReturnsSelectedModelThatForecastsAnyHorizon() {
+        double[] data = generateStationaryData(100, 0.5);
+        val forecast = Arima.forecast(data, 6);
+        val model = Arima.fit(data, 6);
+
+        assertNotNull(model.getParams().getOrder());
+        assertEquals(forecast.getAic(), model.getAic());
+        assertTrue(model.getSigma2() > 0, "Residual variance must be positive");
+        assertArrayEquals(forecast.getForecast(), model.forecast(6).getForecast(), 1e-12);
+        val longer = model.forecast(24).getForecast();
+        assertEquals(24, longer.length);
+        assertArrayEquals(forecast.getForecast(), Arrays.copyOf(longer, 6), 1e-12);
+
+        Arima arima = new Arima();
+        arima.fit(data);
+        assertNotNull(arima.getModel());
+        assertEquals(Arima.fit(data, 15).getAic(), arima.getModel().getAic());
+        assertArrayEquals(arima.getModel().forecast(9).getForecast(), arima.forecast(9).getForecast(), 1e-12);
+    }
+
+    @Test
+    void testSelectedOrderDoesNotDependOnScale() {
+        val random = new Random(1);
+        val base = new double[150];
+        for (int i = 1; i < base.length; i++) {
+            base[i] = 0.6 * base[i - 1] + random.nextGaussian();
+        }
+        // d is chosen by an absolute variance threshold, so all scales stay on the same side of it;
+        // powers of two keep the scaled arithmetic exact
+        ArimaOrder expected = null;
+        for (val scale : new double[]{1, 64, 4096}) {
+            val data = base.clone();
+            for (int i = 0; i < data.length; i++) {
+                data[i] *= scale;
+            }
+            val order = Arima.fit(data, 10).getParams().getOrder();
+            if (expected == null) {
+                expected = order;
+            }
+            assertEquals(expected, order, "Scaling the data by " + scale + " must not change the selected order");
+        }
+    }
+
+    @Test
+    void testFittedModelForecastsContinueInputLevel() {
+        val data = TestUtils.trendSeasonalSeries(120, 7);
+        val last = data[data.length - 1];
+        val model = Arima.fit(data, 10);
+        val forecast = model.forecast(12).getForecast();
+        assertEquals(last, forecast[0], 0.05 * last, "First forecast must continue the level of the input");
+
+        Arima arima = new Arima();
+        arima.fit(data);
+        assertEquals(last, arima.forecast(1).getForecast()[0], 0.05 * last);
+    }
+
+    @Test
+    void testParallelForecastMatchesSequential() {
+        val data = new double[60];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 5 * Math.sin(i * 0.7) + 0.3 * Math.cos(i * 2.3);
+        }
+        val sequential = Arima.forecast(data, 4);
+        val parallel = Arima.forecast(data, 4, ForkJoinPool.commonPool());
+
+        assertEquals(sequential.getAic(), parallel.getAic(), "Parallel search must select the same model");
+        assertArrayEquals(sequential.getForecast(), parallel.getForecast());
+    }
+
+    @Test
+    void testStepwiseSearchNeverBeatsExhaustive() {
+        val data = new double[80];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 3 * Math.sin(i * Math.PI / 6) + 0.5 * Math.cos(i * 1.9);
+        }
+        val exhaustive = Arima.forecast(data, 3);
+        val stepwise = Arima.forecast(data, 3,
+                SearchOptions.builder().strategy(SearchStrategy.STEPWISE).build());
+
+        assertEquals(3, stepwise.getForecast().length);
+        assertTrue(exhaustive.getAic() <= stepwise.getAic(),
+                "Stepwise candidates are a subset of the grid, so its AIC cannot be lower");
+    }
+
+    @Test
+    void testInfeasibleCandidatesArePruned() {
+        val result = Arima.forecast(TEST_DATA, 3);
+        // seasonal candidates need more than one season of data, so on a short series they are never fitted
+        assertTrue(result.getPrunedCandidates() > 0, "Short series should prune candidates");
+        assertTrue(result.getPrunedCandidates() <= 432, "Cannot prune more candidates than the grid holds");
+    }
+
+    @Test
+    void testRefitStaysInNeighbourhoodOfPreviousOrder() {
+        val data = TestUtils.trendSeasonalSeries(120, 21);
+        val previousParams = new ArimaParameterModel(1, 1, 1, 1, 1, 0, 12);
+        val previous = ArimaSolver.estimateARIMA(previousParams, Arrays.copyOf(data, 100), 100, 110);
+
+        val refitted = Arima.refit(previous, data, 10);
+        val order = refitted.getParams().getOrder();
+        assertEquals(1, order.d());
+        assertEquals(1, order.D());
+        assertTrue(Math.abs(order.p() - 1) + Math.abs(order.q() - 1) <= 2, "p and q move by at most one each");
+        assertTrue(Math.abs(order.P() - 1) + Math.abs(order.Q()) <= 2, "P and Q move by at most one each");
+        assertFalse(Double.isNaN(refitted.getAic()));
+        assertEquals(10, refitted.forecast(10).getForecast().length);
+    }
+
+    @Test
+    void testRefitOfFittedModelForecastsLikeFitOnUnchangedData() {
+        val data = TestUtils.trendSeasonalSeries(120, 3);
+        val fitted = Arima.fit(data, 10);
+        val refitted = Arima.refit(fitted, data, 10);
+
+        assertEquals(fitted.getParams().getOrder().d(), refitted.getParams().getOrder().d());
+        val expected = fitted.forecast(3).getForecast();
+        val actual = refitted.forecast(3).getForecast();
+        val tolerance = 3 * Math.sqrt(fitted.getSigma2());
+        for (var j = 0; j < 3; ++j) {
+            assertEquals(expected[j], actual[j], tolerance, "Refit must forecast on the scale of the fit");
+        }
+    }
+
+    @Test
+    void testAsyncForecastMatchesBlocking() throws Exception {
+        val result = Arima.forecastAsync(TEST_DATA, 3).get(30, TimeUnit.SECONDS);
+        assertArrayEquals(Arima.forecast(TEST_DATA, 3).getForecast(), result.getForecast());
+    }
+
+    @Test
+    void testCancellationInterruptsSearch() throws Exception {
+        val data = TestUtils.trendSeasonalSeries(200, 2);
+        // candidates are held until after the cancel, so the search is certainly running and can only stop early
+        // because the interrupt reached it
+        val candidateStarted = new CountDownLatch(1);
+        val release = new CountDownLatch(1);
+        Executor candidates = task -> Thread.ofVirtual().start(() -> {
+            candidateStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            task.run();
+        });
+        val finished = new CountDownLatch(1);
+        Executor executor = task -> Thread.ofVirtual().start(() -> {
+            try {
+                task.run();
+            } finally {
+                finished.countDown();
+            }
+        });
+
+        val options = SearchOptions.builder().executor(candidates).build();
+        val future = Arima.forecastAsync(data, 10, options, executor);
+        assertTrue(candidateStarted.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true), "The search should still be running");
+        assertTrue(finished.await(5, TimeUnit.SECONDS), "Cancelled search should stop promptly");
+        assertTrue(future.isCancelled());
+        release.countDown();
+    }
+
+    @Test
+    void testVirtualThreadsAreNumbered() {
+        val first = InterruptibleFuture.supplyInterruptibly(() -> Thread.currentThread().getName(),
+                InterruptibleFuture.VIRTUAL_THREADS).join();
+        val second = InterruptibleFuture.supplyInterruptibly(() -> Thread.currentThread().getName(),
+                InterruptibleFuture.VIRTUAL_THREADS).join();
+        assertTrue(first.startsWith("forecast-"));
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void testForeignInterruptIsNotCleared() {
+        Executor callingThread = Runnable::run;
+        val future = InterruptibleFuture.supplyInterruptibly(() -> {
+            Thread.currentThread().interrupt();
+            return 1;
+        }, callingThread);
+        assertEquals(1, future.join());
+        assertTrue(Thread.interrupted(), "An interrupt not caused by cancel must survive the task");
+    }
+
+    @Test
+    void testTimeLimitedSearchReturnsBestSoFar() {
+        val data = TestUtils.trendSeasonalSeries(500, 4);
+        // every reading of the clock advances it by 1 ms, so the budget runs out after a fixed amount of work
+        val clock = new AtomicLong();
+        val options = SearchOptions.builder()
+                .timeLimit(Duration.ofMillis(30))
+                .nanoClock(() -> clock.getAndAdd(1_000_000))
+                .build();
+
+        val result = Arima.forecast(data, 5, options);
+        clock.set(0);
+        val again = Arima.forecast(data, 5, options);
+        assertEquals(result.getEvaluatedCandidates(), again.getEvaluatedCandidates());
+        assertArrayEquals(result.getForecast(), again.getForecast());
+        assertTrue(result.isTimeLimited());
+        assertTrue(result.getEvaluatedCandidates() > 0);
+        assertTrue(result.getEvaluatedCandidates() + result.getPrunedCandidates() < 432);
+        assertEquals(5, result.getForecast().length);
+
+        val unlimited = Arima.forecast(TEST_DATA, 3);
+        assertFalse(unlimited.isTimeLimited());
+        assertEquals(432, unlimited.getEvaluatedCandidates() + unlimited.getPrunedCandidates());
+    }
+
     @Test
     void testDetermineOptimalDForStationaryData() throws Exception {
         val stationaryData = new double[]{2.1, 1.9, 2.0, 2.05, 1.95};
@@ -86,11 +308,13 @@ class ArimaTest {
 
     // AIC Calculation Test
     @Test
-    void testCalculateAIC() throws Exception {
+    void testCalculateAIC() {
         val params = new ArimaParameterModel(1, 1, 1, 0, 0, 0, 12);
-        val model = new ArimaModel(params, new double[10], 5);
-        double aic = TestUtils.callCalculateModelAIC(model, new double[]{1.0, 2.0, 3.0});
-        assertFalse(Double.isNaN(aic), "AIC should be a valid number");
+        val data = generateStationaryData(40, 2.0);
+        val model = ArimaSolver.estimateARIMA(params, data, data.length, data.length + 3);
+        assertFalse(Double.isNaN(model.getAic()), "AIC should be a valid number");
+        assertTrue(model.getSigma2() > 0, "Residual variance should be positive for noisy data");
+        assertTrue(model.getAicc() > model.getAic(), "AICc adds a positive small-sample correction");
     }
 
     // Invalid input data processing test
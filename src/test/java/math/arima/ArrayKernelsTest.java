@@ -0,0 +1,121 @@
+package math.arima;
+
+import lombok.val;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the scalar and the Vector API kernels directly. Runs under the {@code vectorTest} task, which loads the
+ * incubator module; without the module the tests are skipped.
+ */
+public class ArrayKernelsTest {
+    private static final String PACKAGE = "math.series.time.arima.analytics.";
+    private static final int[] SIZES = {1, 3, 8, 17, 1001};
+
+    private static Object scalar;
+    private static Object vector;
+
+    @BeforeAll
+    static void loadKernels() throws Exception {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "jdk.incubator.vector is not in the boot layer");
+        scalar = newKernels("ScalarArrayKernels");
+        vector = newKernels("VectorArrayKernels");
+    }
+
+    private static Object newKernels(String name) throws Exception {
+        val constructor = Class.forName(PACKAGE + name).getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    private static Object call(Object kernels, String name, Object... args) throws Exception {
+        for (Method method : Class.forName(PACKAGE + "ArrayKernels").getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                method.setAccessible(true);
+                return method.invoke(kernels, args);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    private static double[] series(Random random, int n) {
+        val data = new double[n];
+        for (var i = 0; i < n; i++) {
+            data[i] = 100 + 10 * random.nextGaussian();
+        }
+        return data;
+    }
+
+    @Test
+    void testSelectedKernelsAreVector() throws Exception {
+        val instance = Class.forName(PACKAGE + "ArrayKernels").getDeclaredField("INSTANCE");
+        instance.setAccessible(true);
+        assertThat(instance.get(null).getClass().getSimpleName()).isEqualTo("VectorArrayKernels");
+    }
+
+    @Test
+    void testElementWiseKernelsAreBitIdentical() throws Exception {
+        val random = new Random(1);
+        for (val n : SIZES) {
+            val data = series(random, n);
+            for (var lag = 1; lag < Math.min(n, 14); lag += 3) {
+                val expected = new double[n - lag];
+                val actual = new double[n - lag];
+                call(scalar, "difference", data, expected, lag);
+                call(vector, "difference", data, actual, lag);
+                assertThat(actual).containsExactly(expected);
+
+                val scaledExpected = series(random, n - lag);
+                val scaledActual = scaledExpected.clone();
+                call(scalar, "addScaled", data, lag, scaledExpected, n - lag, -0.7);
+                call(vector, "addScaled", data, lag, scaledActual, n - lag, -0.7);
+                assertThat(scaledActual).containsExactly(scaledExpected);
+            }
+
+            val shiftedExpected = data.clone();
+            val shiftedActual = data.clone();
+            call(scalar, "shift", shiftedExpected, -3.25);
+            call(vector, "shift", shiftedActual, -3.25);
+            assertThat(shiftedActual).containsExactly(shiftedExpected);
+        }
+    }
+
+    @Test
+    void testReductionsStayWithinDocumentedTolerance() throws Exception {
+        val random = new Random(2);
+        for (val n : SIZES) {
+            val data = series(random, n);
+            val other = series(random, n + 2);
+            var sumAbs = 0.0;
+            for (val value : data) {
+                sumAbs += Math.abs(value);
+            }
+            val mean = (double) call(scalar, "sum", data) / n;
+            val bound = n * Math.ulp(1.0);
+
+            assertThat((double) call(vector, "sum", data))
+                    .isCloseTo((double) call(scalar, "sum", data), within(bound * sumAbs));
+            val deviations = (double) call(scalar, "sumSquaredDeviations", data, mean);
+            assertThat((double) call(vector, "sumSquaredDeviations", data, mean))
+                    .isCloseTo(deviations, within(bound * deviations + 1e-12));
+
+            // offset ranges exercise the unaligned head and the scalar tail
+            for (val range : new int[][]{{0, n}, {1, n}, {n / 3, n - n / 4}}) {
+                val squared = (double) call(scalar, "sumSquaredErrors", other, 2, data, range[0], range[1]);
+                assertThat((double) call(vector, "sumSquaredErrors", other, 2, data, range[0], range[1]))
+                        .isCloseTo(squared, within(bound * squared + 1e-12));
+                val absolute = (double) call(scalar, "sumAbsoluteErrors", other, 2, data, range[0], range[1]);
+                assertThat((double) call(vector, "sumAbsoluteErrors", other, 2, data, range[0], range[1]))
+                        .isCloseTo(absolute, within(bound * absolute + 1e-12));
+            }
+        }
+    }
+}
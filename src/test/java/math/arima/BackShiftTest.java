@@ -1,9 +1,13 @@
 package math.arima;
 
 import lombok.val;
+import math.series.time.arima.core.ArimaException;
 import math.series.time.arima.models.BackShift;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -15,4 +19,33 @@ public class BackShiftTest {
         val merged = op1.apply(op2);
         assertTrue(merged.getDegree() >= 3);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLongSeasonalOperatorKeepsOnlyNonZeroLags() {
+        val m = 8760;
+        val seasonal = new BackShift(2 * m, false);
+        seasonal.setIndex(m, true);
+        seasonal.setIndex(2 * m, true);
+        val merged = seasonal.apply(new BackShift(1, true));
+        merged.initializeParams(false);
+
+        assertEquals(2 * m + 1, merged.getDegree());
+        assertArrayEquals(new int[]{1, m, m + 1, 2 * m, 2 * m + 1}, merged.paramOffsets());
+
+        merged.setParam(m + 1, 0.25);
+        assertEquals(0.25, merged.getParam(m + 1));
+        assertEquals(0.0, merged.getParam(2 * m));
+        assertThrows(ArimaException.class, () -> merged.getParam(2));
+    }
+
+    @Test
+    public void testMaskIsCopied() {
+        val mask = new boolean[]{true, false, true};
+        val op = new BackShift(mask);
+        mask[1] = true;
+        op.initializeParams(false);
+
+        assertEquals(2, op.getDegree());
+        assertArrayEquals(new int[]{2}, op.paramOffsets());
+    }
+}
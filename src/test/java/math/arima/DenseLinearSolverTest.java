@@ -0,0 +1,121 @@
+package math.arima;
+
+import lombok.val;
+import math.series.time.arima.analytics.DenseLinearSolver;
+import math.series.time.arima.core.ArimaException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DenseLinearSolverTest {
+    private static final double RIDGE = 1e-6;
+
+    @Test
+    void testMatchesCommonsMathOnPositiveDefiniteSystems() {
+        val random = new Random(7);
+        for (int n = 1; n <= 24; n++) {
+            val a = gram(random, n, n + 5);
+            val b = randomVector(random, n);
+            assertArrayEquals(solveWithCommonsMath(a, b, n), solve(a, b, n), 0.0);
+        }
+    }
+
+    @Test
+    void testFallsBackToLUForIndefiniteSystems() {
+        val random = new Random(11);
+        for (int n = 2; n <= 12; n++) {
+            val a = new double[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = i; j < n; j++) {
+                    a[i * n + j] = a[j * n + i] = random.nextGaussian();
+                }
+                a[i * n + i] = (i % 2 == 0 ? 1 : -1) * (n + random.nextDouble());
+            }
+            val b = randomVector(random, n);
+            assertArrayEquals(solveWithCommonsMath(a, b, n), solve(a, b, n), 0.0);
+        }
+    }
+
+    @Test
+    void testSingularSystemThrows() {
+        val a = new double[]{1, 2, 2, 4};
+        val a2 = new double[]{-1, -2, -2, -4};
+        assertThrows(ArimaException.class, () -> solve(a2, new double[]{1, 1}, 2));
+        // the ridge makes the rank-deficient positive semi-definite matrix solvable
+        solve(a, new double[]{1, 1}, 2);
+    }
+
+    @Test
+    void testSameResultOnEveryThread() {
+        val random = new Random(3);
+        val n = 16;
+        val a = gram(random, n, 40);
+        val b = randomVector(random, n);
+        val expected = solve(a, b, n);
+        IntStream.range(0, 64).parallel()
+                .forEach(i -> assertArrayEquals(expected, solve(a, b, n), 0.0));
+    }
+
+    private static double[] solve(double[] a, double[] b, int n) {
+        val x = new double[n];
+        new DenseLinearSolver().solve(a, b, n, RIDGE, x);
+        return x;
+    }
+
+    private static double[] solveWithCommonsMath(double[] a, double[] b, int n) {
+        RealMatrix matrix = new Array2DRowRealMatrix(n, n);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                matrix.setEntry(i, j, a[i * n + j]);
+            }
+        }
+        val rhs = new ArrayRealVector(b);
+        try {
+            val regularized = matrix.copy();
+            for (int i = 0; i < n; i++) {
+                regularized.addToEntry(i, i, RIDGE);
+            }
+            return new CholeskyDecomposition(regularized).getSolver().solve(rhs).toArray();
+        } catch (NonPositiveDefiniteMatrixException e) {
+            return new LUDecomposition(matrix).getSolver().solve(rhs).toArray();
+        }
+    }
+
+    private static double[] gram(Random random, int n, int rows) {
+        val z = new double[rows][n];
+        for (val row : z) {
+            for (int j = 0; j < n; j++) {
+                row[j] = random.nextGaussian();
+            }
+        }
+        val a = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                var sum = 0.0;
+                for (val row : z) {
+                    sum += row[i] * row[j];
+                }
+                a[i * n + j] = sum;
+            }
+        }
+        return a;
+    }
+
+    private static double[] randomVector(Random random, int n) {
+        val b = new double[n];
+        for (int i = 0; i < n; i++) {
+            b[i] = random.nextGaussian();
+        }
+        return b;
+    }
+}
@@ -2,11 +2,17 @@ package math.arima;
 
 
 import lombok.val;
+import math.series.time.arima.analytics.ArimaWorkspace;
+import math.series.time.arima.analytics.Autocovariance;
 import math.series.time.arima.analytics.HannanRissanen;
 import math.series.time.arima.core.ArimaException;
 import math.series.time.arima.models.ArimaParameterModel;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class HannanRissanenTest {
@@ -63,7 +69,7 @@ public class HannanRissanenTest {
     // RMSE Reduction Test
     @Test
     void testRMSEImprovement() {
-        val data = generateMA1Data(100, 0.6, 0.1);
+        val data = generateMA1Data(new Random(11), 100, 0.6, 0.1);
         ArimaParameterModel params = new ArimaParameterModel(0, 0, 1, 0, 0, 0, 0);
 
         val initialRMSE = Double.MAX_VALUE;
@@ -72,11 +78,134 @@ public class HannanRissanenTest {
         assertTrue(params.getCurrentMACoefficients()[0] < initialRMSE, "RMSE should decrease");
     }
 
-    private double[] generateMA1Data(int n, double theta, double noiseLevel) {
+    @Test
+    void testEarlyStoppingReportsIterations() {
+        val data = generateMA1Data(new Random(12), 400, 0.6, 0.1);
+
+        // without MA terms the regression does not depend on the errors
+        val ar = HannanRissanen.estimateARMA(data, new ArimaParameterModel(2, 0, 0, 0, 0, 0, 0), 10, 5);
+        assertEquals(1, ar.iterations());
+
+        val ma = HannanRissanen.estimateARMA(data, new ArimaParameterModel(0, 0, 1, 0, 0, 0, 0), 10, 50,
+                1e-4, null);
+        assertTrue(ma.iterations() > 1 && ma.iterations() < 50, "MA fit should converge early: " + ma.iterations());
+    }
+
+    @Test
+    void testHoldoutScoringLeavesInputUntouched() {
+        val data = generateMA1Data(new Random(13), 120, 0.4, 0.2);
+        val copy = data.clone();
+        val estimate = HannanRissanen.estimateARMA(data, new ArimaParameterModel(1, 0, 1, 0, 0, 0, 0), 12, 5);
+
+        assertArrayEquals(copy, data);
+        assertTrue(estimate.holdoutRmse() > 0 && Double.isFinite(estimate.holdoutRmse()));
+        assertEquals(120 - 12 - 2, estimate.residualCount());
+    }
+
+    @Test
+    void testWorkspaceReuseDoesNotLeakBetweenEstimates() {
+        val longSeries = generateMA1Data(new Random(14), 400, 0.5, 0.3);
+        val shortSeries = generateMA1Data(new Random(15), 60, -0.4, 0.1);
+
+        val first = HannanRissanen.estimateARMA(shortSeries, new ArimaParameterModel(2, 0, 1, 0, 0, 0, 0), 6, 5);
+        HannanRissanen.estimateARMA(longSeries, new ArimaParameterModel(1, 0, 2, 0, 0, 0, 0), 20, 5);
+        val again = HannanRissanen.estimateARMA(shortSeries, new ArimaParameterModel(2, 0, 1, 0, 0, 0, 0), 6, 5);
+        assertEquals(first, again);
+
+        try (var workspace = ArimaWorkspace.acquire()) {
+            val buffer = workspace.buffer(ArimaWorkspace.Slot.SERIES, 400);
+            assertSame(buffer, workspace.buffer(ArimaWorkspace.Slot.SERIES, 60));
+        }
+    }
+
+    @Test
+    void testReleasedWorkspaceDropsOversizedBuffers() {
+        try (var workspace = ArimaWorkspace.acquire()) {
+            workspace.buffer(ArimaWorkspace.Slot.SERIES, ArimaWorkspace.MAX_RETAINED_LENGTH + 1);
+        }
+        try (var workspace = ArimaWorkspace.acquire()) {
+            assertTrue(workspace.buffer(ArimaWorkspace.Slot.SERIES, 1).length <= ArimaWorkspace.MAX_RETAINED_LENGTH);
+        }
+    }
+
+    @Test
+    void testVirtualThreadsShareWorkspacesThroughThePool() throws Exception {
+        val first = new AtomicReference<ArimaWorkspace>();
+        val second = new AtomicReference<ArimaWorkspace>();
+        Thread.ofVirtual().start(() -> {
+            try (var workspace = ArimaWorkspace.acquire()) {
+                first.set(workspace);
+            }
+        }).join();
+        Thread.ofVirtual().start(() -> {
+            try (var workspace = ArimaWorkspace.acquire()) {
+                second.set(workspace);
+            }
+        }).join();
+        assertSame(first.get(), second.get());
+        try (var workspace = ArimaWorkspace.acquire()) {
+            assertNotSame(first.get(), workspace, "Platform threads keep their own workspace");
+        }
+    }
+
+    @Test
+    void testIterationsStopOnceOutOfTime() throws Exception {
+        val data = generateMA1Data(new Random(16), 300, 0.6, 0.3);
+        val method = HannanRissanen.class.getDeclaredMethod("estimateARMA",
+                double[].class, ArimaParameterModel.class, int.class, int.class, double.class, double[].class,
+                int.class, BooleanSupplier.class, ArimaWorkspace.class);
+        method.setAccessible(true);
+
+        try (var workspace = ArimaWorkspace.acquire()) {
+            val outOfTime = (HannanRissanen.Estimate) method.invoke(null, data,
+                    new ArimaParameterModel(0, 0, 2, 0, 0, 0, 0), 10, 50, 0.0, null, 0,
+                    (BooleanSupplier) () -> true, workspace);
+            val unlimited = (HannanRissanen.Estimate) method.invoke(null, data,
+                    new ArimaParameterModel(0, 0, 2, 0, 0, 0, 0), 10, 50, 0.0, null, 0,
+                    (BooleanSupplier) () -> false, workspace);
+            assertEquals(1, outOfTime.iterations());
+            assertTrue(unlimited.iterations() > 1);
+        }
+    }
+
+    @Test
+    void testYuleWalkerFitRecoversARCoefficients() {
+        val random = new Random(5);
+        val data = new double[20000];
+        for (var i = 2; i < data.length; i++) {
+            data[i] = 0.5 * data[i - 1] - 0.3 * data[i - 2] + random.nextGaussian();
+        }
+        val phi = HannanRissanen.fit(data, 2);
+        assertEquals(0.5, phi.getEntry(0), 0.03);
+        assertEquals(-0.3, phi.getEntry(1), 0.03);
+
+        val pacf = HannanRissanen.partialAutocorrelations(data, 3);
+        assertEquals(-0.3, pacf[1], 0.03, "PACF at lag p equals the last AR coefficient");
+        assertEquals(0.0, pacf[2], 0.03, "PACF vanishes beyond the AR order");
+    }
+
+    @Test
+    void testAutocovarianceFftMatchesDirectSum() {
+        val random = new Random(9);
+        for (val n : new int[]{1, 2, 7, 64, 1000}) {
+            val data = new double[n];
+            for (var i = 0; i < n; i++) {
+                data[i] = 3 + random.nextGaussian();
+            }
+            val maxLag = Math.min(n + 2, 50);
+            val direct = Autocovariance.direct(data, maxLag);
+            val fft = Autocovariance.fft(data, maxLag);
+            for (var k = 0; k <= maxLag; k++) {
+                assertEquals(direct[k], fft[k], 1e-9 * (1 + Math.abs(direct[0])), "lag " + k + ", n=" + n);
+            }
+        }
+    }
+
+    private double[] generateMA1Data(Random random, int n, double theta, double noiseLevel) {
         val data = new double[n];
         val errors = new double[n];
         for (var i = 1; i < n; i++) {
-            errors[i] = noiseLevel * Math.random();
+            errors[i] = noiseLevel * random.nextGaussian();
             data[i] = theta * errors[i - 1] + errors[i];
         }
         return data;
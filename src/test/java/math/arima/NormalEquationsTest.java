@@ -0,0 +1,96 @@
+package math.arima;
+
+import lombok.val;
+import math.series.time.arima.models.ArimaParameterModel;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NormalEquationsTest {
+    private static final int[][] LAYOUTS = {
+            // p, q, P, Q, m
+            {1, 0, 0, 0, 0},
+            {0, 1, 0, 0, 0},
+            {2, 2, 0, 0, 0},
+            {3, 0, 1, 0, 4},
+            {0, 2, 0, 1, 7},
+            {1, 1, 1, 1, 4},
+            {3, 3, 2, 2, 12},
+    };
+
+    @Test
+    void testMatchesMaterializedDesignMatrix() throws Exception {
+        val random = new Random(5);
+        val equations = newNormalEquations();
+        for (val layout : LAYOUTS) {
+            val params = new ArimaParameterModel(layout[0], 0, layout[1], layout[2], 0, layout[3], layout[4]);
+            val offsetsAR = params.getOffsetsAR();
+            val offsetsMA = params.getOffsetsMA();
+            var r = 0;
+            for (val offset : offsetsAR) {
+                r = Math.max(r, offset);
+            }
+            for (val offset : offsetsMA) {
+                r = Math.max(r, offset);
+            }
+            val data = new double[r + 80];
+            val errors = new double[data.length];
+            for (var j = 0; j < data.length; ++j) {
+                data[j] = 50 + 10 * random.nextGaussian();
+                errors[j] = random.nextGaussian();
+            }
+            val size = data.length - r;
+
+            val k = offsetsAR.length + offsetsMA.length;
+            val z = new double[size][k];
+            val x = new double[size];
+            for (var i = 0; i < size; ++i) {
+                for (var a = 0; a < offsetsAR.length; ++a) {
+                    z[i][a] = data[r + i - offsetsAR[a]];
+                }
+                for (var b = 0; b < offsetsMA.length; ++b) {
+                    z[i][offsetsAR.length + b] = errors[r + i - offsetsMA[b]];
+                }
+                x[i] = data[r + i];
+            }
+            val zt = new Array2DRowRealMatrix(z, false).transpose();
+            val expectedZtZ = zt.multiply(zt.transpose()).getData();
+            val expectedZtX = zt.operate(new ArrayRealVector(x, false)).toArray();
+
+            invoke(equations, "build", params, data, errors, r, size);
+            assertEquals(k, (int) invoke(equations, "dimension"));
+            val ztz = (double[]) invoke(equations, "ztz");
+            val ztx = (double[]) invoke(equations, "ztx");
+            for (var a = 0; a < k; ++a) {
+                for (var b = 0; b < k; ++b) {
+                    assertEquals(expectedZtZ[a][b], ztz[a * k + b], 0.0, "ZᵀZ[" + a + "][" + b + "]");
+                }
+            }
+            assertArrayEquals(expectedZtX, Arrays.copyOf(ztx, k), 0.0);
+        }
+    }
+
+    private static Object newNormalEquations() throws Exception {
+        Constructor<?> constructor = Class.forName("math.series.time.arima.analytics.NormalEquations")
+                .getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    private static Object invoke(Object target, String name, Object... args) throws Exception {
+        for (val method : target.getClass().getDeclaredMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == args.length) {
+                method.setAccessible(true);
+                return method.invoke(target, args);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+}
@@ -1,9 +1,9 @@
 package math.arima;
 
 import math.series.time.arima.analytics.Arima;
-import math.series.time.arima.models.ArimaModel;
 
 import java.lang.reflect.Method;
+import java.util.Random;
 
 public class TestUtils {
     public static boolean callIsStationary(double[] data) throws Exception {
@@ -12,16 +12,15 @@ public class TestUtils {
         return (boolean) method.invoke(null, (Object) data);
     }
 
-    public static double callCalculateModelAIC(ArimaModel model, double[] data) throws Exception {
-        // Getting a private method
-        Method method = Arima.class.getDeclaredMethod(
-                "calculateModelAIC",
-                ArimaModel.class,
-                double[].class
-        );
-        method.setAccessible(true); // Allowing access
-
-        // Calling the static method (passing null as an instance)
-        return (double) method.invoke(null, model, data);
+    /**
+     * Linear trend, a seasonal sine of period 12 and seeded standard normal noise.
+     */
+    public static double[] trendSeasonalSeries(int n, long seed) {
+        Random random = new Random(seed);
+        double[] data = new double[n];
+        for (int j = 0; j < n; ++j) {
+            data[j] = 100 + 0.5 * j + 4 * Math.sin(j * Math.PI / 6) + random.nextGaussian();
+        }
+        return data;
     }
-}
\ No newline at end of file
+}
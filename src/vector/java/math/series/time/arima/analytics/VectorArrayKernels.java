@@ -0,0 +1,126 @@
+package math.series.time.arima.analytics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import lombok.val;
+
+/**
+ * {@link ArrayKernels} on the incubating Vector API, using the widest double species of the platform.
+ * Only loaded reflectively by {@link ArrayKernels} once the module is known to be present. Lives in the
+ * {@code vector} source set, the only one compiled against the incubator module.
+ */
+final class VectorArrayKernels implements ArrayKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void difference(final double[] src, final double[] dst, final int lag) {
+        val n = src.length - lag;
+        val bound = SPECIES.loopBound(n);
+        var k = 0;
+        for (; k < bound; k += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, src, k + lag)
+                    .sub(DoubleVector.fromArray(SPECIES, src, k))
+                    .intoArray(dst, k);
+        }
+        for (; k < n; ++k) {
+            dst[k] = src[k + lag] - src[k];
+        }
+    }
+
+    @Override
+    public void addScaled(final double[] src, final int srcOffset, final double[] dst, final int length,
+                          final double factor) {
+        val bound = SPECIES.loopBound(length);
+        var k = 0;
+        for (; k < bound; k += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, dst, k)
+                    .add(DoubleVector.fromArray(SPECIES, src, k + srcOffset).mul(factor))
+                    .intoArray(dst, k);
+        }
+        for (; k < length; ++k) {
+            dst[k] += factor * src[k + srcOffset];
+        }
+    }
+
+    @Override
+    public void shift(final double[] data, final double amount) {
+        val bound = SPECIES.loopBound(data.length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, data, i).add(amount).intoArray(data, i);
+        }
+        for (; i < data.length; i++) {
+            data[i] += amount;
+        }
+    }
+
+    @Override
+    public double sum(final double[] data) {
+        val bound = SPECIES.loopBound(data.length);
+        var acc = DoubleVector.zero(SPECIES);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, data, i));
+        }
+        var sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < data.length; i++) {
+            sum += data[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumSquaredDeviations(final double[] data, final double mean) {
+        val bound = SPECIES.loopBound(data.length);
+        var acc = DoubleVector.zero(SPECIES);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            val diff = DoubleVector.fromArray(SPECIES, data, i).sub(mean);
+            acc = acc.add(diff.mul(diff));
+        }
+        var sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < data.length; i++) {
+            val diff = data[i] - mean;
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumSquaredErrors(final double[] left, final int leftOffset, final double[] right,
+                                   final int startIndex, final int endIndex) {
+        val bound = startIndex + SPECIES.loopBound(endIndex - startIndex);
+        var acc = DoubleVector.zero(SPECIES);
+        var i = startIndex;
+        for (; i < bound; i += SPECIES.length()) {
+            val error = DoubleVector.fromArray(SPECIES, left, i + leftOffset)
+                    .sub(DoubleVector.fromArray(SPECIES, right, i));
+            acc = acc.add(error.mul(error));
+        }
+        var sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < endIndex; i++) {
+            val error = left[i + leftOffset] - right[i];
+            sum += error * error;
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumAbsoluteErrors(final double[] left, final int leftOffset, final double[] right,
+                                    final int startIndex, final int endIndex) {
+        val bound = startIndex + SPECIES.loopBound(endIndex - startIndex);
+        var acc = DoubleVector.zero(SPECIES);
+        var i = startIndex;
+        for (; i < bound; i += SPECIES.length()) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, left, i + leftOffset)
+                    .sub(DoubleVector.fromArray(SPECIES, right, i))
+                    .abs());
+        }
+        var sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < endIndex; i++) {
+            sum += Math.abs(left[i + leftOffset] - right[i]);
+        }
+        return sum;
+    }
+}